@@ -0,0 +1,208 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for the hot paths of the examples.
+ *
+ * Each benchmark runs an example's main method, in the same way as
+ * ExampleSuite, on a generated .fake dataset described by the benchmark
+ * parameters. The examples live in the default package, so they are
+ * invoked reflectively.
+ *
+ * To run all benchmarks with Maven:
+ *
+ * $ mvn -Pbenchmarks verify
+ *
+ * or with Gradle:
+ *
+ * $ gradle jmh
+ *
+ * Parameters can be overridden on the JMH command line, e.g.
+ * {@code -p size=4096 -p pixelType=uint16}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExampleBenchmarks {
+
+  /** The width and height of each generated plane. */
+  @Param({"512", "2048"})
+  public int size;
+
+  /** The tile width and height used by the tiled examples. */
+  @Param({"256"})
+  public int tileSize;
+
+  /** The pixel type of the generated dataset. */
+  @Param({"uint8", "uint16"})
+  public String pixelType;
+
+  /** The number of series in the generated dataset. */
+  @Param({"1", "4"})
+  public int seriesCount;
+
+  /** The number of Z sections in the generated dataset. */
+  @Param({"8"})
+  public int sizeZ;
+
+  /** Directory containing the generated input and all outputs. */
+  private Path directory;
+
+  /** The generated .fake input file. */
+  private File input;
+
+  /** The output file written by each benchmark. */
+  private File output;
+
+  /** The file written by ReadWriteInMemory to the working directory. */
+  private File inMemoryOutput;
+
+  @Setup(Level.Trial)
+  public void createDataset() throws IOException {
+    directory = Files.createTempDirectory("bio-formats-benchmarks");
+    String name = "bench&sizeX=" + size + "&sizeY=" + size +
+      "&sizeZ=" + sizeZ + "&pixelType=" + pixelType +
+      "&series=" + seriesCount + ".fake";
+    input = Files.createFile(directory.resolve(name)).toFile();
+    output = directory.resolve("output.ome.tiff").toFile();
+    inMemoryOutput = new File(name + ".ome.tif");
+  }
+
+  @Setup(Level.Invocation)
+  public void deleteOutput() throws IOException {
+    // writers append to existing files, so every invocation starts afresh
+    Files.deleteIfExists(output.toPath());
+    Files.deleteIfExists(inMemoryOutput.toPath());
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteDataset() throws IOException {
+    deleteOutput();
+    Files.deleteIfExists(input.toPath());
+    Files.deleteIfExists(directory);
+  }
+
+  @Benchmark
+  public void convertPlanes() throws Exception {
+    execute("FileConvert", input.getAbsolutePath(), output.getAbsolutePath());
+  }
+
+  @Benchmark
+  public void readWriteTiles() throws Exception {
+    execute("TiledReaderWriter", input.getAbsolutePath(),
+      output.getAbsolutePath(), String.valueOf(tileSize),
+      String.valueOf(tileSize));
+  }
+
+  @Benchmark
+  public void readWriteOverlappedTiles() throws Exception {
+    // a tile size that does not divide the image, to exercise edge tiles
+    String overlappedTileSize = String.valueOf(tileSize - 16 * 3);
+    execute("OverlappedTiledWriter", input.getAbsolutePath(),
+      output.getAbsolutePath(), overlappedTileSize, overlappedTileSize);
+  }
+
+  @Benchmark
+  public void readWriteInMemory() throws Exception {
+    execute("ReadWriteInMemory", input.getAbsolutePath());
+  }
+
+  @Benchmark
+  public void readOrthogonalPlanes() throws Exception {
+    execute("OrthogonalReader", "--input", input.getAbsolutePath(),
+      "--output", output.getAbsolutePath());
+  }
+
+  @Benchmark
+  public void exportSyntheticPlanes() throws Exception {
+    // generating overlaps with writing, so this measures the whole export,
+    // bound by whichever of the two is slower
+    execute("FileExport", output.getAbsolutePath(),
+      "--size-x", String.valueOf(size), "--size-y", String.valueOf(size),
+      "--pixel-type", pixelType, "--planes", String.valueOf(sizeZ),
+      "--threads", "4");
+  }
+
+  @Benchmark
+  public void generatePyramid() throws Exception {
+    execute("GeneratePyramidResolutions", input.getAbsolutePath(), "2", "3",
+      output.getAbsolutePath());
+  }
+
+  /**
+   * Run the main method of an example class.
+   *
+   * @param name the name of the example class
+   * @param args the command line arguments for the example
+   * @throws Exception if the example throws an exception
+   */
+  private static void execute(String name, String... args) throws Exception {
+    Method main = Class.forName(name).getMethod("main", String[].class);
+    try {
+      main.invoke(null, (Object) args);
+    }
+    catch (InvocationTargetException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import loci.formats.FormatTools;
+import loci.formats.ome.OMEXMLMetadata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks comparing ways of describing a plate in OME-XML.
+ *
+ * The setter benchmarks run FileExportSPW's field by field initialization;
+ * the builder benchmarks describe the same plate with PlateMetadataBuilder,
+ * either materialised as a metadata store or streamed as XML. The
+ * ToXML variants also serialise the store, as a writer does.
+ *
+ * Memory is best compared with the GC profiler, whose
+ * gc.alloc.rate.norm column gives the bytes allocated per operation:
+ *
+ * $ mvn -Pbenchmarks verify -Djmh.include=PlateMetadataBenchmarks
+ *
+ * then rerun the reported JMH command line with {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PlateMetadataBenchmarks {
+
+  /** The number of wells on the plate; a standard plate format. */
+  @Param({"96", "384"})
+  public int wells;
+
+  /** The number of fields of view in each well. */
+  @Param({"9", "100"})
+  public int fields;
+
+  private static final int SIZE = 512;
+
+  private static final int SIZE_T = 3;
+
+  /** A configured FileExportSPW. */
+  private Object exporter;
+
+  /** FileExportSPW.initializeMetadata(int, int, int). */
+  private Method initializeMetadata;
+
+  /** A configured PlateMetadataBuilder. */
+  private Object builder;
+
+  private Method build;
+
+  private Method writeXML;
+
+  @Setup(Level.Trial)
+  public void configure() throws Exception {
+    // the examples live in the default package, so are used reflectively
+    Class<?> exportClass = Class.forName("FileExportSPW");
+    exporter = exportClass.getConstructor(String.class)
+      .newInstance("unused.ome.tiff");
+    exportClass.getMethod("setWellCount", int.class).invoke(exporter, wells);
+    exportClass.getMethod("setFieldsPerWell", int.class)
+      .invoke(exporter, fields);
+    exportClass.getMethod("setSizeT", int.class).invoke(exporter, SIZE_T);
+    initializeMetadata = exportClass.getDeclaredMethod("initializeMetadata",
+      int.class, int.class, int.class);
+    initializeMetadata.setAccessible(true);
+
+    Class<?> builderClass = Class.forName("PlateMetadataBuilder");
+    int[] plate = (int[]) builderClass.getMethod("getPlateSize", int.class)
+      .invoke(null, wells);
+    Constructor<?> constructor =
+      builderClass.getConstructor(int.class, int.class, int.class);
+    builder = constructor.newInstance(plate[0], plate[1], fields);
+    builderClass.getMethod("setImageSize", int.class, int.class)
+      .invoke(builder, SIZE, SIZE);
+    builderClass.getMethod("setDimensions", int.class, int.class, int.class)
+      .invoke(builder, 1, 1, SIZE_T);
+    build = builderClass.getMethod("build");
+    writeXML = builderClass.getMethod("writeXML", OutputStream.class);
+  }
+
+  @Benchmark
+  public Object setters() throws Exception {
+    return invoke(initializeMetadata, exporter, SIZE, SIZE, FormatTools.UINT16);
+  }
+
+  @Benchmark
+  public String settersToXML() throws Exception {
+    return ((OMEXMLMetadata) setters()).dumpXML();
+  }
+
+  @Benchmark
+  public Object builder() throws Exception {
+    return invoke(build, builder);
+  }
+
+  @Benchmark
+  public String builderToXML() throws Exception {
+    return ((OMEXMLMetadata) builder()).dumpXML();
+  }
+
+  @Benchmark
+  public long builderStreamXML() throws Exception {
+    CountingOutputStream out = new CountingOutputStream();
+    invoke(writeXML, builder, out);
+    return out.count;
+  }
+
+  /**
+   * Invoke a method, rethrowing what it throws rather than its wrapper.
+   */
+  private static Object invoke(Method method, Object target, Object... args)
+    throws Exception
+  {
+    try {
+      return method.invoke(target, args);
+    }
+    catch (InvocationTargetException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /** Discards what is written, counting the bytes. */
+  private static class CountingOutputStream extends OutputStream {
+    long count;
+
+    @Override
+    public void write(int b) throws IOException {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      count += len;
+    }
+  }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures heap allocation on the current thread and garbage collection
+ * activity in the JVM from the time the counter is created.
+ *
+ * Per-thread allocation figures are only available on JVMs that expose
+ * {@code com.sun.management.ThreadMXBean}; elsewhere
+ * {@link #getAllocatedBytes()} returns -1.
+ */
+public class AllocationCounter {
+
+  /** The thread whose allocations are measured. */
+  private final long threadId = Thread.currentThread().getId();
+
+  /** The number of bytes allocated by the thread when the counter started. */
+  private final long startBytes;
+
+  /** The number of garbage collections when the counter started. */
+  private final long startCollections;
+
+  /** The time spent in garbage collection when the counter started. */
+  private final long startCollectionTime;
+
+  /** Start counting allocations and garbage collections. */
+  public AllocationCounter() {
+    startBytes = threadAllocatedBytes();
+    startCollections = collectionCount();
+    startCollectionTime = collectionTime();
+  }
+
+  /**
+   * @return the number of bytes allocated by the measured thread since the
+   *   counter was created, or -1 if this JVM cannot report it
+   */
+  public long getAllocatedBytes() {
+    long bytes = threadAllocatedBytes();
+    return bytes < 0 || startBytes < 0 ? -1 : bytes - startBytes;
+  }
+
+  /** @return the number of garbage collections since the counter was created */
+  public long getCollectionCount() {
+    return collectionCount() - startCollections;
+  }
+
+  /**
+   * @return the time in milliseconds spent in garbage collection since the
+   *   counter was created
+   */
+  public long getCollectionTime() {
+    return collectionTime() - startCollectionTime;
+  }
+
+  @Override
+  public String toString() {
+    long bytes = getAllocatedBytes();
+    return (bytes < 0 ? "unknown" : String.valueOf(bytes)) +
+      " bytes allocated, " + getCollectionCount() + " garbage collections (" +
+      getCollectionTime() + " ms)";
+  }
+
+  private long threadAllocatedBytes() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean sunBean =
+        (com.sun.management.ThreadMXBean) bean;
+      if (sunBean.isThreadAllocatedMemorySupported() &&
+        sunBean.isThreadAllocatedMemoryEnabled())
+      {
+        return sunBean.getThreadAllocatedBytes(threadId);
+      }
+    }
+    return -1;
+  }
+
+  private static long collectionCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc :
+      ManagementFactory.getGarbageCollectorMXBeans())
+    {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+
+  private static long collectionTime() {
+    long time = 0;
+    for (GarbageCollectorMXBean gc :
+      ManagementFactory.getGarbageCollectorMXBeans())
+    {
+      time += Math.max(0, gc.getCollectionTime());
+    }
+    return time;
+  }
+
+}
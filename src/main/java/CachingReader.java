@@ -0,0 +1,106 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.io.IOException;
+
+import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.ReaderWrapper;
+
+/**
+ * A reader that looks up decoded regions in a {@link TileCache} before
+ * decoding them, and offers what it decodes to the cache. Any number of
+ * readers, including readers of different files, can share one cache.
+ *
+ * Regions are cached exactly as requested, so the cache pays off when the
+ * same tiles are read repeatedly, as viewers and tiled analyses do.
+ */
+public class CachingReader extends ReaderWrapper {
+
+  private final TileCache cache;
+
+  /**
+   * @param reader the reader to decode tiles that are not cached
+   * @param cache the cache to share
+   */
+  public CachingReader(IFormatReader reader, TileCache cache) {
+    super(reader);
+    this.cache = cache;
+  }
+
+  /** @return the cache this reader uses */
+  public TileCache getTileCache() {
+    return cache;
+  }
+
+  @Override
+  public byte[] openBytes(int no) throws FormatException, IOException {
+    return openBytes(no, 0, 0, getSizeX(), getSizeY());
+  }
+
+  @Override
+  public byte[] openBytes(int no, byte[] buf)
+    throws FormatException, IOException
+  {
+    return openBytes(no, buf, 0, 0, getSizeX(), getSizeY());
+  }
+
+  @Override
+  public byte[] openBytes(int no, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    return openBytes(no, new byte[FormatTools.getPlaneSize(this, w, h)],
+      x, y, w, h);
+  }
+
+  @Override
+  public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    int size = FormatTools.getPlaneSize(this, w, h);
+    if (buf.length < size) {
+      // let the wrapped reader report the undersized buffer
+      return reader.openBytes(no, buf, x, y, w, h);
+    }
+    TileCache.Key key = new TileCache.Key(getCurrentFile(), getCoreIndex(),
+      no, x, y, w, h);
+    if (cache.get(key, buf) != null) {
+      return buf;
+    }
+    reader.openBytes(no, buf, x, y, w, h);
+    cache.put(key, buf, 0, size);
+    return buf;
+  }
+
+}
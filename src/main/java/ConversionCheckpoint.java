@@ -0,0 +1,226 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A sidecar journal recording which planes of a conversion have been
+ * written to the output file, so that an interrupted conversion can be
+ * resumed from the first unfinished plane.
+ *
+ * The journal is a text file next to the output file. The first line names
+ * the input file; every following line records one finished plane as its
+ * series index, plane index and a CRC-32 checksum of the decoded pixels.
+ * Each line is synced to disk before the next plane is converted.
+ *
+ * The unit of work is a whole plane, even when a plane over the memory
+ * budget is streamed tile by tile: a TIFF writer cannot carry on filling
+ * the tiles of a partly written plane in a new session, so a conversion
+ * interrupted inside such a plane converts that plane again from its first
+ * tile.
+ */
+public class ConversionCheckpoint implements Closeable {
+
+  /** The suffix appended to the output file name to name the journal. */
+  public static final String SUFFIX = ".checkpoint";
+
+  /** The prefix of the journal line naming the input file. */
+  private static final String INPUT_PREFIX = "input ";
+
+  /** The journal file. */
+  private final File file;
+
+  /** Finished planes, encoded as (series << 32) | plane. */
+  private final Set<Long> done = new HashSet<Long>();
+
+  /** The checksum of the most recently finished plane. */
+  private long lastChecksum;
+
+  /** The open journal, or null if not yet started. */
+  private FileOutputStream stream;
+
+  /** The writer for journal lines. */
+  private Writer out;
+
+  /**
+   * Construct a checkpoint for the given output file.
+   *
+   * @param outputFile the file being written by the conversion
+   */
+  public ConversionCheckpoint(String outputFile) {
+    this.file = new File(outputFile + SUFFIX);
+  }
+
+  /**
+   * Load an existing journal.
+   *
+   * @param inputFile the file being converted
+   * @return true if a journal for the same input file was found and
+   *   records at least one finished plane
+   * @throws IOException if the journal cannot be read
+   */
+  public boolean load(String inputFile) throws IOException {
+    done.clear();
+    if (!file.exists()) {
+      return false;
+    }
+    BufferedReader in = new BufferedReader(new InputStreamReader(
+      new FileInputStream(file), StandardCharsets.UTF_8));
+    try {
+      String header = in.readLine();
+      if (header == null || !header.equals(INPUT_PREFIX + inputFile)) {
+        return false;
+      }
+      String line;
+      while ((line = in.readLine()) != null) {
+        String[] fields = line.split(" ");
+        if (fields.length != 3) {
+          // a partially written line from an interrupted run
+          break;
+        }
+        done.add(key(Integer.parseInt(fields[0]), Integer.parseInt(fields[1])));
+        lastChecksum = Long.parseLong(fields[2]);
+      }
+    }
+    catch (NumberFormatException e) {
+      throw new IOException("Corrupt checkpoint " + file, e);
+    }
+    finally {
+      in.close();
+    }
+    return !done.isEmpty();
+  }
+
+  /**
+   * Start a new journal, discarding any previous one.
+   *
+   * @param inputFile the file being converted
+   * @throws IOException if the journal cannot be written
+   */
+  public void start(String inputFile) throws IOException {
+    done.clear();
+    open(false);
+    out.write(INPUT_PREFIX + inputFile + "\n");
+    sync();
+  }
+
+  /**
+   * Continue the journal loaded by {@link #load(String)}.
+   *
+   * @throws IOException if the journal cannot be opened
+   */
+  public void resume() throws IOException {
+    open(true);
+  }
+
+  /**
+   * Record that a plane has been completely written.
+   *
+   * @param series the series containing the plane
+   * @param image the index of the plane within the series
+   * @param checksum the CRC-32 of the plane's pixels
+   * @throws IOException if the journal cannot be written
+   */
+  public void commit(int series, int image, long checksum) throws IOException {
+    out.write(series + " " + image + " " + checksum + "\n");
+    sync();
+    done.add(key(series, image));
+    lastChecksum = checksum;
+  }
+
+  /**
+   * @param series the series containing the plane
+   * @param image the index of the plane within the series
+   * @return true if the plane has already been written
+   */
+  public boolean isDone(int series, int image) {
+    return done.contains(key(series, image));
+  }
+
+  /** @return the number of finished planes */
+  public int size() {
+    return done.size();
+  }
+
+  /** @return the checksum of the most recently finished plane */
+  public long getLastChecksum() {
+    return lastChecksum;
+  }
+
+  /**
+   * Remove the journal once the conversion has completed.
+   *
+   * @throws IOException if the journal cannot be closed or deleted
+   */
+  public void delete() throws IOException {
+    close();
+    if (file.exists() && !file.delete()) {
+      throw new IOException("Could not delete " + file);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (out != null) {
+      out.close();
+      out = null;
+      stream = null;
+    }
+  }
+
+  private void open(boolean append) throws IOException {
+    close();
+    stream = new FileOutputStream(file, append);
+    out = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+  }
+
+  private void sync() throws IOException {
+    out.flush();
+    stream.getFD().sync();
+  }
+
+  private static long key(int series, int image) {
+    return ((long) series << 32) | (image & 0xffffffffL);
+  }
+
+}
@@ -0,0 +1,323 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records where the time goes during a conversion: reader initialization,
+ * plane decoding, plane encoding, tile compression and closing files.
+ *
+ * Each stage keeps a latency histogram with logarithmic buckets, each
+ * power of two being split into {@link #SUB_BUCKETS} linear sub-buckets, so
+ * that percentiles are reported within about 12% of their true value with a
+ * fixed amount of memory. Together with the bytes passed through each stage
+ * this shows whether a slow conversion is bound by reading or by encoding.
+ * All methods may be called from several threads at once.
+ *
+ * Reader and writer calls are usually timed by wrapping the reader in an
+ * {@link InstrumentedReader} and using an {@link InstrumentedWriter}:
+ *
+ * <pre>
+ * ConversionMetrics metrics = new ConversionMetrics();
+ * IFormatReader reader = new InstrumentedReader(new ImageReader(), metrics);
+ * IFormatWriter writer = new InstrumentedWriter(metrics);
+ * ...
+ * metrics.report("metrics.json");
+ * </pre>
+ *
+ * Other work can be timed directly with {@link #start()} and
+ * {@link #record}.
+ */
+public class ConversionMetrics {
+
+  /** The instrumented stages of a conversion. */
+  public enum Stage {
+    /** Reader and writer initialization, including metadata parsing. */
+    SET_ID("setId"),
+    /** Reading and decoding pixels. */
+    DECODE("openBytes"),
+    /** Encoding and writing pixels. */
+    ENCODE("saveBytes"),
+    /** Compressing tiles ahead of the writer. */
+    COMPRESS("compress"),
+    /** Closing files, including any final flushing. */
+    CLOSE("close");
+
+    private final String label;
+
+    Stage(String label) {
+      this.label = label;
+    }
+
+    /** @return the name of the reader or writer method timed by this stage */
+    public String getLabel() {
+      return label;
+    }
+  }
+
+  /** The number of linear sub-buckets in each power of two. */
+  private static final int SUB_BUCKETS = 8;
+
+  /** The number of bits used to select a sub-bucket. */
+  private static final int SUB_BUCKET_BITS = 3;
+
+  /** Enough buckets to hold any non-negative long value. */
+  private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+  /** The statistics for each stage. */
+  private final Map<Stage, StageStats> stages =
+    new EnumMap<Stage, StageStats>(Stage.class);
+
+  /** The number of planes converted. */
+  private final LongAdder planes = new LongAdder();
+
+  /** The time at which the metrics were created. */
+  private final long startTime = System.nanoTime();
+
+  /** Create empty statistics for every stage. */
+  public ConversionMetrics() {
+    for (Stage stage : Stage.values()) {
+      stages.put(stage, new StageStats());
+    }
+  }
+
+  /** @return the current time, to be passed to {@link #record} */
+  public long start() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Record one call of a stage that started at the given time and ends now.
+   *
+   * @param stage the stage that was timed
+   * @param start the value returned by {@link #start()} before the call
+   * @param bytes the number of pixel bytes processed by the call
+   */
+  public void record(Stage stage, long start, long bytes) {
+    stages.get(stage).record(System.nanoTime() - start, bytes);
+  }
+
+  /** Count one fully converted plane. */
+  public void countPlane() {
+    planes.increment();
+  }
+
+  /**
+   * Print a summary of all stages and write it as JSON to the given file.
+   * Failure to write the file is reported but does not stop the caller.
+   *
+   * @param metricsFile the JSON file to write, or null to report nothing
+   */
+  public void report(String metricsFile) {
+    if (metricsFile == null) {
+      return;
+    }
+    System.out.print(this);
+    try {
+      writeJSON(new File(metricsFile));
+    }
+    catch (IOException e) {
+      System.err.println("Failed to write metrics to " + metricsFile);
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Write a JSON summary of all stages to the given file.
+   *
+   * @param file the file to write
+   * @throws IOException if the file cannot be written
+   */
+  public void writeJSON(File file) throws IOException {
+    Writer out = new OutputStreamWriter(
+      new FileOutputStream(file), StandardCharsets.UTF_8);
+    try {
+      out.write(toJSON());
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  /** @return a JSON summary of all stages */
+  public String toJSON() {
+    double wallSeconds = (System.nanoTime() - startTime) / 1e9;
+    StringBuilder json = new StringBuilder();
+    json.append("{\n");
+    json.append("  \"wallTimeMs\": ").append(format(wallSeconds * 1000)).append(",\n");
+    json.append("  \"planes\": ").append(planes.sum()).append(",\n");
+    json.append("  \"planesPerSecond\": ")
+      .append(format(planes.sum() / wallSeconds)).append(",\n");
+    json.append("  \"stages\": {");
+    String separator = "\n";
+    for (Map.Entry<Stage, StageStats> entry : stages.entrySet()) {
+      json.append(separator);
+      json.append("    \"").append(entry.getKey().getLabel()).append("\": ");
+      entry.getValue().appendJSON(json);
+      separator = ",\n";
+    }
+    json.append("\n  }\n}\n");
+    return json.toString();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder summary = new StringBuilder();
+    for (Map.Entry<Stage, StageStats> entry : stages.entrySet()) {
+      StageStats stats = entry.getValue();
+      if (stats.count.sum() == 0) {
+        continue;
+      }
+      summary.append(String.format(Locale.ROOT,
+        "%-10s %8d calls  p50 %10.3f ms  p99 %10.3f ms  %10.2f MB/s%n",
+        entry.getKey().getLabel(), stats.count.sum(),
+        stats.percentile(0.5) / 1e6, stats.percentile(0.99) / 1e6,
+        stats.megabytesPerSecond()));
+    }
+    return summary.toString();
+  }
+
+  private static String format(double value) {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      return "0";
+    }
+    return String.format(Locale.ROOT, "%.3f", value);
+  }
+
+  /**
+   * Map a latency to its histogram bucket.
+   *
+   * @param nanos a non-negative latency in nanoseconds
+   * @return the index of the bucket containing the latency
+   */
+  private static int bucket(long nanos) {
+    if (nanos < SUB_BUCKETS) {
+      return (int) nanos;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * @param index a histogram bucket index
+   * @return the largest latency in nanoseconds that maps to the bucket
+   */
+  private static long bucketUpperBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long sub = index % SUB_BUCKETS;
+    long lower = (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+    return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+
+  /** Latency histogram and totals for one stage. */
+  private static class StageStats {
+
+    final LongAdder count = new LongAdder();
+    final LongAdder bytes = new LongAdder();
+    final LongAdder totalNanos = new LongAdder();
+    final AtomicLong maxNanos = new AtomicLong();
+    final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+    void record(long nanos, long byteCount) {
+      nanos = Math.max(0, nanos);
+      count.increment();
+      bytes.add(byteCount);
+      totalNanos.add(nanos);
+      histogram.incrementAndGet(bucket(nanos));
+      long max;
+      while (nanos > (max = maxNanos.get())) {
+        if (maxNanos.compareAndSet(max, nanos)) {
+          break;
+        }
+      }
+    }
+
+    /**
+     * @param quantile the quantile to report, between 0 and 1
+     * @return the latency in nanoseconds below which the given fraction of
+     *   calls completed
+     */
+    long percentile(double quantile) {
+      long total = count.sum();
+      if (total == 0) {
+        return 0;
+      }
+      long rank = (long) Math.ceil(quantile * total);
+      long seen = 0;
+      for (int i=0; i<BUCKETS; i++) {
+        seen += histogram.get(i);
+        if (seen >= rank) {
+          return Math.min(bucketUpperBound(i), maxNanos.get());
+        }
+      }
+      return maxNanos.get();
+    }
+
+    double megabytesPerSecond() {
+      long nanos = totalNanos.sum();
+      return nanos == 0 ? 0 : (bytes.sum() / 1e6) / (nanos / 1e9);
+    }
+
+    void appendJSON(StringBuilder json) {
+      long calls = count.sum();
+      json.append("{\"count\": ").append(calls);
+      json.append(", \"bytes\": ").append(bytes.sum());
+      json.append(", \"totalMs\": ").append(format(totalNanos.sum() / 1e6));
+      json.append(", \"meanMs\": ")
+        .append(format(calls == 0 ? 0 : totalNanos.sum() / 1e6 / calls));
+      json.append(", \"p50Ms\": ").append(format(percentile(0.5) / 1e6));
+      json.append(", \"p90Ms\": ").append(format(percentile(0.9) / 1e6));
+      json.append(", \"p99Ms\": ").append(format(percentile(0.99) / 1e6));
+      json.append(", \"maxMs\": ").append(format(maxNanos.get() / 1e6));
+      json.append(", \"mbPerSecond\": ").append(format(megabytesPerSecond()));
+      json.append(", \"callsPerSecond\": ")
+        .append(format(calls == 0 ? 0 : calls / (totalNanos.sum() / 1e9)));
+      json.append("}");
+    }
+  }
+
+}
@@ -0,0 +1,303 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import loci.common.RandomAccessInputStream;
+import loci.formats.FormatException;
+import loci.formats.IFormatReader;
+import loci.formats.ImageReader;
+import loci.formats.meta.MetadataStore;
+
+/**
+ * Remembers which reader class matched files with a given suffix and
+ * magic number, so that later files of the same kind skip the isThisType
+ * checks against the rest of the reader list.
+ *
+ * On a hit only the cached reader's own isThisType check runs, preceded by
+ * the checks of the few default readers listed before it that claim the
+ * same suffix, so that a more specific reader, such as OME-TIFF ahead of
+ * the generic TIFF reader, still takes precedence. If none of them accepts
+ * the file, the entry is dropped and the file goes through full detection,
+ * as on a miss.
+ *
+ * A cache may be shared between threads, and saved to and loaded from a
+ * properties file so that it carries over between runs. It holds at most
+ * {@link #MAX_ENTRIES} entries; once full, new kinds of file are detected
+ * in full without being added.
+ */
+public class DetectionCache {
+
+  /** Maximum number of suffix and magic number combinations remembered. */
+  public static final int MAX_ENTRIES = 1024;
+
+  /**
+   * Number of leading bytes used as the magic number; enough to tell apart
+   * byte orders and versions of TIFF, but not the offsets that follow.
+   */
+  private static final int MAGIC_LENGTH = 4;
+
+  private final Map<String, Class<? extends IFormatReader>> readers =
+    new ConcurrentHashMap<String, Class<? extends IFormatReader>>();
+
+  /** The default reader classes, in the order ImageReader tries them. */
+  private final Class<? extends IFormatReader>[] defaultClasses =
+    ImageReader.getDefaultReaderClasses().getClasses();
+
+  /**
+   * The default readers that are listed before a cached class and claim
+   * the same suffix, keyed by the class name and suffix.
+   */
+  private final Map<String, List<Class<? extends IFormatReader>>> preceding =
+    new ConcurrentHashMap<String, List<Class<? extends IFormatReader>>>();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong stale = new AtomicLong();
+
+  /**
+   * Initialize a reader for the given file, trying the reader that matched
+   * similar files first.
+   *
+   * @param id the file to open
+   * @param store the metadata store to populate, or null for the default
+   * @return a reader on which setId has been called
+   * @throws FormatException if no reader can open the file
+   * @throws IOException if the file cannot be read
+   */
+  public IFormatReader open(String id, MetadataStore store)
+    throws FormatException, IOException
+  {
+    String suffix = getSuffix(id);
+    String key = suffix + ':' + getMagic(id);
+    Class<? extends IFormatReader> cached = readers.get(key);
+    if (cached != null) {
+      IFormatReader reader = findReader(id, suffix, cached);
+      if (reader != null) {
+        if (store != null) {
+          reader.setMetadataStore(store);
+        }
+        reader.setId(id);
+        hits.incrementAndGet();
+        return reader;
+      }
+      // none of the candidate readers accepts this file after all
+      readers.remove(key, cached);
+      stale.incrementAndGet();
+    }
+
+    misses.incrementAndGet();
+    ImageReader reader = new ImageReader();
+    if (store != null) {
+      reader.setMetadataStore(store);
+    }
+    reader.setId(id);
+    if (readers.size() < MAX_ENTRIES) {
+      readers.put(key, reader.getReader().getClass());
+    }
+    return reader;
+  }
+
+  /** @return the number of files opened without full detection */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /** @return the number of files that needed full detection */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /** @return the number of cached readers that rejected a file */
+  public long getStaleCount() {
+    return stale.get();
+  }
+
+  /** @return the number of suffix and magic number combinations known */
+  public int size() {
+    return readers.size();
+  }
+
+  /**
+   * Add the entries saved in the given file. Entries naming reader classes
+   * that are not available, and entries beyond {@link #MAX_ENTRIES}, are
+   * ignored.
+   *
+   * @param file a file written by {@link #save(File)}
+   * @throws IOException if the file cannot be read
+   */
+  public void load(File file) throws IOException {
+    Properties properties = new Properties();
+    try (InputStream in = new FileInputStream(file)) {
+      properties.load(in);
+    }
+    for (String key : properties.stringPropertyNames()) {
+      if (readers.size() >= MAX_ENTRIES) {
+        break;
+      }
+      String className = properties.getProperty(key);
+      try {
+        readers.put(key,
+          Class.forName(className).asSubclass(IFormatReader.class));
+      }
+      catch (ClassNotFoundException | ClassCastException e) {
+        System.err.println("Ignoring unknown reader " + className);
+      }
+    }
+  }
+
+  /**
+   * Write the current entries to the given file.
+   *
+   * @param file the file to write
+   * @throws IOException if the file cannot be written
+   */
+  public void save(File file) throws IOException {
+    Properties properties = new Properties();
+    for (Map.Entry<String, Class<? extends IFormatReader>> entry :
+      readers.entrySet())
+    {
+      properties.setProperty(entry.getKey(), entry.getValue().getName());
+    }
+    try (OutputStream out = new FileOutputStream(file)) {
+      properties.store(out, "Bio-Formats reader detection cache");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "Detection cache: " + hits + " hits, " + misses + " misses, " +
+      stale + " stale";
+  }
+
+  /**
+   * Find the reader that full detection would choose, assuming it is the
+   * cached reader or one of the readers before it that claim the suffix.
+   *
+   * @return a new, uninitialized reader, or null if none accepts the file
+   */
+  private IFormatReader findReader(String id, String suffix,
+    Class<? extends IFormatReader> cached) throws FormatException
+  {
+    List<Class<? extends IFormatReader>> classes = preceding.computeIfAbsent(
+      cached.getName() + ':' + suffix, k -> getPreceding(cached, suffix));
+    for (Class<? extends IFormatReader> c : classes) {
+      IFormatReader reader = newReader(c);
+      if (reader.isThisType(id, true)) {
+        return reader;
+      }
+    }
+    IFormatReader reader = newReader(cached);
+    return reader.isThisType(id, true) ? reader : null;
+  }
+
+  /**
+   * @param cached a reader class that matched a file
+   * @param suffix the file's lower case suffix
+   * @return the default readers listed before the cached class with a
+   *   suffix ending in the given one, in the default order
+   */
+  private List<Class<? extends IFormatReader>> getPreceding(
+    Class<? extends IFormatReader> cached, String suffix)
+  {
+    List<Class<? extends IFormatReader>> classes =
+      new ArrayList<Class<? extends IFormatReader>>();
+    for (Class<? extends IFormatReader> c : defaultClasses) {
+      if (c.equals(cached)) {
+        break;
+      }
+      try {
+        for (String s : newReader(c).getSuffixes()) {
+          if (s.equals(suffix) || s.endsWith("." + suffix)) {
+            classes.add(c);
+            break;
+          }
+        }
+      }
+      catch (FormatException e) {
+        // a reader that cannot be created cannot claim the file either
+      }
+    }
+    return classes;
+  }
+
+  private static IFormatReader newReader(Class<? extends IFormatReader> c)
+    throws FormatException
+  {
+    try {
+      return c.getDeclaredConstructor().newInstance();
+    }
+    catch (ReflectiveOperationException e) {
+      throw new FormatException("Cannot create " + c.getName(), e);
+    }
+  }
+
+  /** @return the lower case suffix of the file name, without the dot */
+  private static String getSuffix(String id) {
+    String name = new File(id).getName();
+    int dot = name.lastIndexOf('.');
+    return dot < 0 ? "" : name.substring(dot + 1).toLowerCase();
+  }
+
+  /**
+   * @return the hex encoded magic number of the file; empty for files that
+   *   cannot be read, such as directories
+   */
+  private static String getMagic(String id) {
+    StringBuilder magic = new StringBuilder();
+    try (RandomAccessInputStream in = new RandomAccessInputStream(id)) {
+      byte[] bytes = new byte[(int) Math.min(MAGIC_LENGTH, in.length())];
+      in.readFully(bytes);
+      for (byte b : bytes) {
+        magic.append(Character.forDigit((b >> 4) & 0xf, 16));
+        magic.append(Character.forDigit(b & 0xf, 16));
+      }
+    }
+    catch (IOException e) {
+      // not a regular file
+    }
+    return magic.toString();
+  }
+
+}
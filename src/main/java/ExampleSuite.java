@@ -58,56 +58,159 @@ public class ExampleSuite {
     URL resource =  ExampleSuite.class.getResource("test.fake");
     URL overlappedResource =  ExampleSuite.class.getResource("test&sizeX=1024&sizeY=1024.fake");
     URL pyramidResource =  ExampleSuite.class.getResource("test&resolutions=4.fake");
+    URL volumeResource =  ExampleSuite.class.getResource("test&sizeZ=8&sizeC=3&sizeT=2.fake");
     File inputFile = new File(resource.toURI());
     File overlappedInputFile = new File(overlappedResource.toURI());
     File pyramidFile = new File(pyramidResource.toURI());
+    File volumeFile = new File(volumeResource.toURI());
     File parentDir = inputFile.getParentFile();
     File convertedFile = new File(parentDir, "converted.ome.tiff");
+    File convertedParallelFile = new File(parentDir, "convertedParallel.ome.tiff");
+    File convertedDetectionFile = new File(parentDir, "convertedDetection.ome.tiff");
+    File convertedPipelinedFile = new File(parentDir, "convertedPipelined.ome.tiff");
+    File convertedMetricsFile = new File(parentDir, "convertedMetrics.ome.tiff");
+    File convertedTiledFile = new File(parentDir, "convertedTiled.ome.tiff");
+    File convertedMemoFile = new File(parentDir, "convertedMemo.ome.tiff");
+    File convertedCheckpointFile = new File(parentDir, "convertedCheckpoint.tif");
     File exportFile = new File(parentDir, "export.ome.tiff");
+    File exportSyntheticFile = new File(parentDir, "exportSynthetic.ome.tiff");
     File exportSPWFile = new File(parentDir, "exportSPW.ome.tiff");
+    File exportPlateFile = new File(parentDir, "exportPlate.ome.tiff");
+    File plateMetadataFile = new File(parentDir, "plate.ome.xml");
+    File exportPlateMetadataFile = new File(parentDir, "exportPlate.ome.xml");
     File simpleTiledFile = new File(parentDir, "simpleTiledFile.ome.tiff");
     File tiledFile = new File(parentDir, "tiledFile.ome.tiff");
     File tiledFile2 = new File(parentDir, "tiledFile2.ome.tiff");
+    File tiledCachedFile = new File(parentDir, "tiledCachedFile.ome.tiff");
+    File tiledParallelFile = new File(parentDir, "tiledParallelFile.ome.tiff");
     File overlappedTiledFile = new File(parentDir, "overlappedTiledFile.ome.tiff");
     File overlappedTiledFile2 = new File(parentDir, "overlappedTiledFile2.ome.tiff");
     File inMemoryFile = new File(parentDir, inputFile.getName() +".ome.tif");
     File orthogonalFile = new File(parentDir, "orthogonal.ome.tiff");
+    File orthogonalSpillFile = new File(parentDir, "orthogonalSpill.ome.tiff");
+    File orthogonalParallelFile = new File(parentDir, "orthogonalParallel.ome.tiff");
     File pyramidOutputFile = new File(parentDir, "generatedPyramid.ome.tiff");
+    File pyramidParallelFile = new File(parentDir, "generatedPyramidParallel.ome.tiff");
+    File metricsFile = new File(parentDir, "metrics.json");
+    File detectionCacheFile = new File(parentDir, "detection.properties");
+    File memoDir = new File(parentDir, "memo");
+    File physicalSizesFile = new File(parentDir, "physicalSizes.jsonl");
     
     // Remove any existing output files
     Files.deleteIfExists(convertedFile.toPath());
+    Files.deleteIfExists(convertedParallelFile.toPath());
+    Files.deleteIfExists(convertedDetectionFile.toPath());
+    Files.deleteIfExists(convertedPipelinedFile.toPath());
+    Files.deleteIfExists(convertedMetricsFile.toPath());
+    Files.deleteIfExists(convertedTiledFile.toPath());
+    Files.deleteIfExists(convertedMemoFile.toPath());
+    Files.deleteIfExists(convertedCheckpointFile.toPath());
     Files.deleteIfExists(exportFile.toPath());
+    Files.deleteIfExists(exportSyntheticFile.toPath());
     Files.deleteIfExists(exportSPWFile.toPath());
+    Files.deleteIfExists(exportPlateFile.toPath());
+    Files.deleteIfExists(plateMetadataFile.toPath());
+    Files.deleteIfExists(exportPlateMetadataFile.toPath());
     Files.deleteIfExists(simpleTiledFile.toPath());
     Files.deleteIfExists(tiledFile.toPath());
     Files.deleteIfExists(tiledFile2.toPath());
+    Files.deleteIfExists(tiledCachedFile.toPath());
+    Files.deleteIfExists(tiledParallelFile.toPath());
     Files.deleteIfExists(overlappedTiledFile.toPath());
     Files.deleteIfExists(overlappedTiledFile2.toPath());
     Files.deleteIfExists(inMemoryFile.toPath());
     Files.deleteIfExists(orthogonalFile.toPath());
+    Files.deleteIfExists(orthogonalSpillFile.toPath());
+    Files.deleteIfExists(orthogonalParallelFile.toPath());
     Files.deleteIfExists(pyramidOutputFile.toPath());
+    Files.deleteIfExists(pyramidParallelFile.toPath());
+    Files.deleteIfExists(metricsFile.toPath());
+    Files.deleteIfExists(detectionCacheFile.toPath());
+    Files.deleteIfExists(physicalSizesFile.toPath());
 
     // Execute examples
     execute("ReadPhysicalSize", new String[] {inputFile.getAbsolutePath()});
+    // the second run loads the memo saved by the first
+    execute("ReadPhysicalSize", new String[] {inputFile.getAbsolutePath(),
+      "--memo-dir", memoDir.getAbsolutePath(), "--memo-min-elapsed", "0"});
+    execute("ReadPhysicalSize", new String[] {inputFile.getAbsolutePath(),
+      "--memo-dir", memoDir.getAbsolutePath(), "--memo-min-elapsed", "0"});
+    execute("ReaderPool", new String[] {inputFile.getAbsolutePath(), "1000"});
     execute("FileConvert", new String[] {
       inputFile.getAbsolutePath(), convertedFile.getAbsolutePath()});
+    execute("FileConvert", new String[] {
+      inputFile.getAbsolutePath(), convertedParallelFile.getAbsolutePath(),
+      "--threads", "4"});
+    execute("FileConvert", new String[] {
+      inputFile.getAbsolutePath(), convertedDetectionFile.getAbsolutePath(),
+      "--threads", "4", "--detection-cache", detectionCacheFile.getAbsolutePath()});
+    execute("FileConvert", new String[] {
+      inputFile.getAbsolutePath(), convertedPipelinedFile.getAbsolutePath(),
+      "--queue-depth", "2"});
+    execute("FileConvert", new String[] {
+      inputFile.getAbsolutePath(), convertedMetricsFile.getAbsolutePath(),
+      "--queue-depth", "2", "--metrics", metricsFile.getAbsolutePath()});
+    execute("FileConvert", new String[] {
+      inputFile.getAbsolutePath(), convertedTiledFile.getAbsolutePath(),
+      "--memory-budget", "65536"});
+    execute("FileConvert", new String[] {
+      inputFile.getAbsolutePath(), convertedMemoFile.getAbsolutePath(),
+      "--memo-dir", memoDir.getAbsolutePath(), "--memo-min-elapsed", "0"});
+    execute("FileConvert", new String[] {
+      inputFile.getAbsolutePath(), convertedCheckpointFile.getAbsolutePath(),
+      "--checkpoint"});
     execute("FileExport", new String[] {exportFile.getAbsolutePath()});
+    execute("FileExport", new String[] {exportSyntheticFile.getAbsolutePath(),
+      "--pixel-type", "float", "--planes", "8", "--pattern", "gradient",
+      "--compressibility", "0.5", "--seed", "1", "--threads", "4"});
     execute("FileExportSPW", new String[] {exportSPWFile.getAbsolutePath()});
+    execute("FileExportSPW", new String[] {exportPlateFile.getAbsolutePath(),
+      "--wells", "96", "--fields", "2", "--size-x", "64", "--size-y", "64",
+      "--threads", "4", "--bulk-metadata", "--pattern", "checkerboard",
+      "--compressibility", "0.75", "--metadata-xml",
+      exportPlateMetadataFile.getAbsolutePath()});
+    execute("PlateMetadataBuilder", new String[] {
+      plateMetadataFile.getAbsolutePath(), "16", "24", "9"});
     execute("SimpleTiledWriter", new String[] {
         inputFile.getAbsolutePath(), simpleTiledFile.getAbsolutePath(), "256", "256"});
     execute("TiledReaderWriter", new String[] {
         inputFile.getAbsolutePath(), tiledFile.getAbsolutePath(), "256", "256"});
     execute("TiledReaderWriter", new String[] {
         inputFile.getAbsolutePath(), tiledFile2.getAbsolutePath(), "256", "128"});
+    execute("TiledReaderWriter", new String[] {
+        inputFile.getAbsolutePath(), tiledCachedFile.getAbsolutePath(), "256", "128",
+        "--tile-cache", "1048576"});
+    execute("TiledReaderWriter", new String[] {
+        inputFile.getAbsolutePath(), tiledParallelFile.getAbsolutePath(), "128", "128",
+        "--compression", "LZW", "--threads", "4"});
     execute("OverlappedTiledWriter", new String[] {
         overlappedInputFile.getAbsolutePath(), overlappedTiledFile.getAbsolutePath(), "96", "96"});
     execute("OverlappedTiledWriter", new String[] {
         overlappedInputFile.getAbsolutePath(), overlappedTiledFile2.getAbsolutePath(), "192", "96"});
     execute("ReadWriteInMemory", new String[] {inputFile.getAbsolutePath()});
+    execute("ReadWriteInMemory", new String[] {inputFile.getAbsolutePath(), "--mapped"});
+    execute("ReadWriteInMemory", new String[] {inputFile.getAbsolutePath(),
+      "--direct", "--spill-threshold", "65536"});
     execute("OrthogonalReader", new String[] {"--input", inputFile.getAbsolutePath(),
       "--output", orthogonalFile.getAbsolutePath()});
+    execute("OrthogonalReader", new String[] {"--input", inputFile.getAbsolutePath(),
+      "--output", orthogonalSpillFile.getAbsolutePath(), "--memory-budget", "65536"});
+    execute("OrthogonalReader", new String[] {"--input", volumeFile.getAbsolutePath(),
+      "--output", orthogonalParallelFile.getAbsolutePath(), "--threads", "4"});
     execute("SubResolutionExample", new String[] { pyramidFile.getAbsolutePath()});
+    execute("ViewportReader", new String[] {pyramidFile.getAbsolutePath(),
+      "0", "0", "0", "512", "512", "128", "128"});
+    execute("ViewportReader", new String[] {pyramidFile.getAbsolutePath(),
+      "0", "64", "64", "200", "100", "150", "75"});
+    execute("TileCache", new String[] {pyramidFile.getAbsolutePath(), "1048576", "128"});
+    execute("TileServer", new String[] {pyramidFile.getAbsolutePath(),
+      "--port", "0", "--tile-size", "128", "--threads", "4", "--load", "2000"});
     execute("GeneratePyramidResolutions", new String[] {
       overlappedInputFile.getAbsolutePath(), "2", "4", pyramidOutputFile.getAbsolutePath()});
+    execute("GeneratePyramidResolutions", new String[] {
+      inputFile.getAbsolutePath(), "2", "3", pyramidParallelFile.getAbsolutePath(),
+      "--threads", "4"});
+    execute("PhysicalSizeScanner", new String[] {parentDir.getAbsolutePath(),
+      "--format", "json", "--output", physicalSizesFile.getAbsolutePath(), "--threads", "4"});
   }
 }
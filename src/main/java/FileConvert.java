@@ -30,7 +30,21 @@
  * #L%
  */
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
 
 import loci.common.services.DependencyException;
 import loci.common.services.ServiceException;
@@ -38,9 +52,15 @@ import loci.common.services.ServiceFactory;
 
 import loci.formats.FormatException;
 import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.IFormatWriter;
 import loci.formats.ImageReader;
 import loci.formats.ImageWriter;
+import loci.formats.Memoizer;
 import loci.formats.meta.IMetadata;
+import loci.formats.meta.MetadataStore;
+import loci.formats.out.OMETiffWriter;
+import loci.formats.out.TiffWriter;
 import loci.formats.services.OMEXMLService;
 
 /**
@@ -51,8 +71,11 @@ import loci.formats.services.OMEXMLService;
  */
 public class FileConvert {
 
+  /** Default maximum number of bytes for a plane to be converted whole. */
+  public static final long DEFAULT_MEMORY_BUDGET = 256L * 1024 * 1024;
+
   /** The file format reader. */
-  private ImageReader reader;
+  private IFormatReader reader;
 
   /** The file format writer. */
   private ImageWriter writer;
@@ -63,6 +86,57 @@ public class FileConvert {
   /** The file to be written. */
   private String outputFile;
 
+  /** The number of threads used to decode planes. */
+  private int threads = 1;
+
+  /**
+   * The number of decoded planes that may be queued ahead of the writer
+   * when pipelining; 0 disables pipelining.
+   */
+  private int queueDepth = 0;
+
+  /**
+   * The maximum number of bytes for a plane to be read in one piece; larger
+   * planes are streamed tile by tile.
+   */
+  private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+
+  /** Whether any series has planes that must be streamed tile by tile. */
+  private boolean needsTiling;
+
+  /** The tile width used when streaming large planes. */
+  private int tileSizeX;
+
+  /** The tile height used when streaming large planes. */
+  private int tileSizeY;
+
+  /** Whether finished planes are journaled so the conversion can resume. */
+  private boolean checkpointing;
+
+  /** The journal of finished planes, or null if not checkpointing. */
+  private ConversionCheckpoint checkpoint;
+
+  /** The total number of planes in the input file. */
+  private int totalPlanes;
+
+  /** Whether a checkpointed conversion stopped at a failed plane. */
+  private boolean aborted;
+
+  /** Timings of the reader and writer calls. */
+  private final ConversionMetrics metrics = new ConversionMetrics();
+
+  /** The file to which a JSON summary of the timings is written, or null. */
+  private String metricsFile;
+
+  /** Additional readers used by the worker threads, one per thread. */
+  private BlockingQueue<IFormatReader> workerReaders;
+
+  /** Remembers which reader matched similar files, or null. */
+  private DetectionCache detectionCache;
+
+  /** Stores parsed metadata between runs, or null. */
+  private MetadataCache metadataCache;
+
   /**
    * Construct a new FileConvert to convert the specified input file.
    *
@@ -74,6 +148,120 @@ public class FileConvert {
     this.outputFile = outputFile;
   }
 
+  /**
+   * Set the number of threads used to decode planes. With more than one
+   * thread, each worker opens its own reader on the input file and planes
+   * are decoded concurrently; the writer still receives every plane in the
+   * same order as a sequential conversion.
+   *
+   * @param threads the number of decoding threads, at least 1
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Thread count must be positive");
+    }
+    this.threads = threads;
+  }
+
+  /**
+   * Set the depth of the queue between the read and write stages. With a
+   * positive depth, planes are read on a background thread into a rotating
+   * ring of buffers while the calling thread writes previously read planes,
+   * so that disk reads overlap with encoding.
+   *
+   * @param queueDepth the maximum number of planes read ahead of the writer,
+   *   or 0 to read and write on the calling thread
+   */
+  public void setQueueDepth(int queueDepth) {
+    if (queueDepth < 0) {
+      throw new IllegalArgumentException("Queue depth must not be negative");
+    }
+    this.queueDepth = queueDepth;
+  }
+
+  /**
+   * Set the maximum size of a plane that is read and written in one piece.
+   * Planes larger than this, including any plane over 2 GB, are converted
+   * region by region using the reader's optimal tile size, so that only a
+   * single tile is held in memory. Conversion fails if one tile is itself
+   * larger than the budget.
+   *
+   * @param memoryBudget the maximum plane size in bytes
+   */
+  public void setMemoryBudget(long memoryBudget) {
+    if (memoryBudget <= 0) {
+      throw new IllegalArgumentException("Memory budget must be positive");
+    }
+    this.memoryBudget = memoryBudget;
+  }
+
+  /**
+   * Enable journaling of finished planes in a sidecar checkpoint file next
+   * to the output file. If a conversion is interrupted, running it again
+   * validates the partial output against the journal and resumes from the
+   * first unfinished plane, without reading or writing finished planes
+   * again. Resuming requires plain TIFF output, which the writer can append
+   * to; for other formats an interrupted conversion starts from scratch.
+   * A checkpointed conversion stops at the first plane that fails, so the
+   * output never has gaps. Planes streamed tile by tile are journaled as a
+   * whole, so an interruption inside one restarts that plane.
+   *
+   * @param checkpointing true to journal finished planes
+   */
+  public void setCheckpointing(boolean checkpointing) {
+    this.checkpointing = checkpointing;
+  }
+
+  /**
+   * Write a JSON summary of the time spent initializing, decoding, encoding
+   * and closing, with latency percentiles and throughput for each stage,
+   * once the conversion finishes.
+   *
+   * @param metricsFile the JSON file to write
+   */
+  public void setMetricsFile(String metricsFile) {
+    this.metricsFile = metricsFile;
+  }
+
+  /** @return the timings recorded during conversion */
+  public ConversionMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Use a cache of previously detected formats when opening the input.
+   * Batch tools converting many files of the same format should share one
+   * cache between their FileConvert instances, and can read its hit and
+   * miss counts once the batch is done.
+   *
+   * @param detectionCache the cache to use, or null for full detection
+   */
+  public void setDetectionCache(DetectionCache detectionCache) {
+    this.detectionCache = detectionCache;
+  }
+
+  /** @return the format detection cache, or null if none is used */
+  public DetectionCache getDetectionCache() {
+    return detectionCache;
+  }
+
+  /**
+   * Open the input through a memoizing reader, so that its parsed state
+   * is saved to disk and later conversions of the same file skip metadata
+   * parsing. Takes precedence over the detection cache, which only applies
+   * when the input has to be parsed.
+   *
+   * @param metadataCache the cache to use, or null to always parse
+   */
+  public void setMetadataCache(MetadataCache metadataCache) {
+    this.metadataCache = metadataCache;
+  }
+
+  /** @return the metadata cache, or null if none is used */
+  public MetadataCache getMetadataCache() {
+    return metadataCache;
+  }
+
   /** Do the actual work of converting the input file to the output file. */
   public void convert() {
     // initialize the files
@@ -82,11 +270,68 @@ public class FileConvert {
     // if we could not initialize one of the files,
     // then it does not make sense to convert the planes
     if (initializationSuccess) {
-      convertPlanes();
+      if ((threads > 1 || queueDepth > 0) && needsTiling) {
+        // whole-plane buffers would exceed the memory budget
+        System.out.println("Planes exceed the memory budget; " +
+          "converting sequentially tile by tile.");
+        convertPlanes();
+      }
+      else if (threads > 1) {
+        convertPlanesParallel();
+      }
+      else if (queueDepth > 0) {
+        convertPlanesPipelined();
+      }
+      else {
+        convertPlanes();
+      }
+
+      // the journal is no longer needed once every plane has been written
+      if (checkpoint != null && checkpoint.size() == totalPlanes) {
+        try {
+          checkpoint.delete();
+        }
+        catch (IOException e) {
+          System.err.println("Failed to delete checkpoint.");
+          e.printStackTrace();
+        }
+      }
     }
 
     // close the files
     cleanup();
+
+    metrics.report(metricsFile);
+  }
+
+  /**
+   * Create a reader and associate it with the input file, using the
+   * metadata or detection cache if there is one.
+   *
+   * @param store the metadata store to populate, or null for the default
+   * @return the initialized reader, wrapped to record its timings
+   */
+  private IFormatReader openReader(MetadataStore store)
+    throws FormatException, IOException
+  {
+    // the caches initialize their own readers, so the whole open is timed
+    long start = metrics.start();
+    IFormatReader newReader;
+    if (metadataCache != null) {
+      newReader = metadataCache.open(inputFile, store);
+    }
+    else if (detectionCache != null) {
+      newReader = detectionCache.open(inputFile, store);
+    }
+    else {
+      newReader = new ImageReader();
+      if (store != null) {
+        newReader.setMetadataStore(store);
+      }
+      newReader.setId(inputFile);
+    }
+    metrics.record(ConversionMetrics.Stage.SET_ID, start, 0);
+    return new InstrumentedReader(newReader, metrics);
   }
 
   /**
@@ -106,14 +351,48 @@ public class FileConvert {
       IMetadata omexml = service.createOMEXMLMetadata();
 
       // set up the reader and associate it with the input file
-      reader = new ImageReader();
-      reader.setMetadataStore(omexml);
-      reader.setId(inputFile);
+      reader = openReader(omexml);
+
+      // find the largest plane, to decide whether planes must be tiled
+      int largestSeries = 0;
+      long largestPlane = 0;
+      totalPlanes = 0;
+      for (int series=0; series<reader.getSeriesCount(); series++) {
+        reader.setSeries(series);
+        totalPlanes += reader.getImageCount();
+        long planeSize = getPlaneSize(reader);
+        if (planeSize > largestPlane) {
+          largestPlane = planeSize;
+          largestSeries = series;
+        }
+      }
+      needsTiling = largestPlane > memoryBudget;
 
       // set up the writer and associate it with the output file
-      writer = new ImageWriter();
+      writer = new InstrumentedWriter(metrics);
       writer.setMetadataRetrieve(omexml);
       writer.setInterleaved(reader.isInterleaved());
+      if (needsTiling) {
+        // stream regions of the reader's optimal tile size
+        reader.setSeries(largestSeries);
+        tileSizeX = reader.getOptimalTileWidth();
+        tileSizeY = reader.getOptimalTileHeight();
+        IFormatWriter w = writer.getWriter(outputFile);
+        if (w instanceof TiffWriter) {
+          // write tiles matching the regions that will be read; TIFF tiles
+          // may be rounded, in which case the regions follow the tiles
+          w.setSeries(largestSeries);
+          tileSizeX = w.setTileSizeX(tileSizeX);
+          tileSizeY = w.setTileSizeY(tileSizeY);
+          w.setSeries(0);
+        }
+        checkTileSize();
+      }
+      reader.setSeries(0);
+      if (checkpointing) {
+        checkpoint = new ConversionCheckpoint(outputFile);
+        prepareCheckpoint(writer.getWriter(outputFile));
+      }
       writer.setId(outputFile);
     }
     catch (FormatException e) {
@@ -135,6 +414,153 @@ public class FileConvert {
     return exception == null;
   }
 
+  /**
+   * Resume from an existing checkpoint if the partial output can be
+   * appended to and matches the journal; otherwise remove any partial
+   * output and start a new journal.
+   *
+   * @param w the writer that will write the output file
+   * @throws IOException if the journal or partial output cannot be accessed
+   */
+  private void prepareCheckpoint(IFormatWriter w) throws IOException {
+    File output = new File(outputFile);
+    boolean resume = checkpoint.load(inputFile) && output.exists();
+    if (resume && (!(w instanceof TiffWriter) || w instanceof OMETiffWriter)) {
+      // OME-TIFF rewrites its OME-XML from the planes written in the
+      // current session, so only plain TIFF output can be appended to
+      System.out.println("Cannot resume writing " + w.getFormat() +
+        "; restarting conversion.");
+      resume = false;
+    }
+    if (resume && !validateOutput()) {
+      System.out.println("Partial output does not match checkpoint; " +
+        "restarting conversion.");
+      resume = false;
+    }
+
+    if (resume) {
+      System.out.println("Resuming after " + checkpoint.size() +
+        " finished planes.");
+      checkpoint.resume();
+    }
+    else {
+      if (output.exists() && !output.delete()) {
+        throw new IOException("Could not delete partial output " + output);
+      }
+      checkpoint.start(inputFile);
+    }
+  }
+
+  /**
+   * Check that the partial output contains exactly the planes recorded in
+   * the checkpoint, and that the last of them was written completely.
+   *
+   * @return true if the conversion can safely resume
+   */
+  private boolean validateOutput() {
+    ImageReader partial = new ImageReader();
+    try {
+      partial.setId(outputFile);
+      int planes = 0;
+      for (int series=0; series<partial.getSeriesCount(); series++) {
+        partial.setSeries(series);
+        planes += partial.getImageCount();
+      }
+      if (planes != checkpoint.size()) {
+        return false;
+      }
+      partial.setSeries(partial.getSeriesCount() - 1);
+      long checksum = checksum(partial, partial.getImageCount() - 1);
+      return checksum == checkpoint.getLastChecksum();
+    }
+    catch (FormatException e) {
+      return false;
+    }
+    catch (IOException e) {
+      return false;
+    }
+    finally {
+      try {
+        partial.close();
+      }
+      catch (IOException e) {
+        System.err.println("Failed to close partial output.");
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Compute the checksum recorded in the checkpoint for a plane, reading it
+   * in the same pieces as it is converted.
+   *
+   * @param r the reader, set to the plane's series
+   * @param image the index of the plane
+   * @return the CRC-32 of the plane's pixels
+   */
+  private long checksum(IFormatReader r, int image)
+    throws FormatException, IOException
+  {
+    CRC32 crc = new CRC32();
+    int width = r.getSizeX();
+    int height = r.getSizeY();
+    int tileWidth = width;
+    int tileHeight = height;
+    if (getPlaneSize(r) > memoryBudget) {
+      tileWidth = getTileWidth(r);
+      tileHeight = getTileHeight(r);
+    }
+    for (int tileY=0; tileY<height; tileY+=tileHeight) {
+      for (int tileX=0; tileX<width; tileX+=tileWidth) {
+        int w = Math.min(tileWidth, width - tileX);
+        int h = Math.min(tileHeight, height - tileY);
+        crc.update(r.openBytes(image, tileX, tileY, w, h));
+      }
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * Record that a plane has been written, if checkpointing is enabled.
+   *
+   * @param series the series containing the plane
+   * @param image the index of the plane within the series
+   * @param plane the plane's pixels
+   * @throws IOException if the checkpoint cannot be written
+   */
+  private void commit(int series, int image, byte[] plane) throws IOException {
+    if (checkpoint != null) {
+      CRC32 crc = new CRC32();
+      crc.update(plane);
+      checkpoint.commit(series, image, crc.getValue());
+    }
+  }
+
+  /**
+   * @param series the series containing the plane
+   * @param image the index of the plane within the series
+   * @return true if the plane was written by an earlier, interrupted run
+   */
+  private boolean isDone(int series, int image) {
+    return checkpoint != null && checkpoint.isDone(series, image);
+  }
+
+  /**
+   * Check whether conversion should continue after attempting a plane.
+   * A checkpointed conversion stops at the first plane that could not be
+   * written, as later planes could not be resumed in order.
+   *
+   * @param series the series containing the plane
+   * @param image the index of the plane within the series
+   * @return false if the conversion must stop
+   */
+  private boolean shouldContinue(int series, int image) {
+    if (checkpoint != null && !checkpoint.isDone(series, image)) {
+      aborted = true;
+    }
+    return !aborted;
+  }
+
   /** Save every plane in the input file to the output file. */
   private void convertPlanes() {
     for (int series=0; series<reader.getSeriesCount(); series++) {
@@ -151,14 +577,28 @@ public class FileConvert {
         break;
       }
 
+      // planes over the memory budget are streamed one tile at a time
+      if (getPlaneSize(reader) > memoryBudget) {
+        convertTiles(series);
+        if (aborted) {
+          return;
+        }
+        continue;
+      }
+
       // construct a buffer to hold one image's pixels
       byte[] plane = new byte[FormatTools.getPlaneSize(reader)];
 
       // convert each image in the current series
       for (int image=0; image<reader.getImageCount(); image++) {
+        if (isDone(series, image)) {
+          continue;
+        }
         try {
           reader.openBytes(image, plane);
           writer.saveBytes(image, plane);
+          metrics.countPlane();
+          commit(series, image, plane);
         }
         catch (IOException e) {
           System.err.println("Failed to convert image #" + image +
@@ -170,8 +610,407 @@ public class FileConvert {
             " in series #" + series);
           e.printStackTrace();
         }
+        if (!shouldContinue(series, image)) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Save every plane in the current series region by region, so that at most
+   * one tile of pixels is held in memory regardless of the plane size.
+   *
+   * @param series the index of the current series
+   */
+  private void convertTiles(int series) {
+    int width = reader.getSizeX();
+    int height = reader.getSizeY();
+    int tileWidth = getTileWidth(reader);
+    int tileHeight = getTileHeight(reader);
+    byte[] tile = new byte[(int) getRegionSize(reader, tileWidth, tileHeight)];
+
+    for (int image=0; image<reader.getImageCount(); image++) {
+      if (isDone(series, image)) {
+        continue;
+      }
+      CRC32 crc = checkpoint == null ? null : new CRC32();
+      try {
+        for (int tileY=0; tileY<height; tileY+=tileHeight) {
+          for (int tileX=0; tileX<width; tileX+=tileWidth) {
+            // tiles in the last row and column may be smaller
+            int w = Math.min(tileWidth, width - tileX);
+            int h = Math.min(tileHeight, height - tileY);
+            byte[] buf = tile;
+            if (w != tileWidth || h != tileHeight) {
+              buf = new byte[(int) getRegionSize(reader, w, h)];
+            }
+            reader.openBytes(image, buf, tileX, tileY, w, h);
+            writer.saveBytes(image, buf, tileX, tileY, w, h);
+            if (crc != null) {
+              crc.update(buf);
+            }
+          }
+        }
+        metrics.countPlane();
+        if (checkpoint != null) {
+          checkpoint.commit(series, image, crc.getValue());
+        }
+      }
+      catch (IOException e) {
+        System.err.println("Failed to convert image #" + image +
+          " in series #" + series);
+        e.printStackTrace();
+      }
+      catch (FormatException e) {
+        System.err.println("Failed to convert image #" + image +
+          " in series #" + series);
+        e.printStackTrace();
+      }
+      if (!shouldContinue(series, image)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @param r the initialized reader
+   * @return the width of the tiles used to stream large planes
+   */
+  private int getTileWidth(IFormatReader r) {
+    int tileWidth = tileSizeX > 0 ? tileSizeX : r.getOptimalTileWidth();
+    return Math.min(tileWidth, r.getSizeX());
+  }
+
+  /**
+   * @param r the initialized reader
+   * @return the height of the tiles used to stream large planes
+   */
+  private int getTileHeight(IFormatReader r) {
+    int tileHeight = tileSizeY > 0 ? tileSizeY : r.getOptimalTileHeight();
+    return Math.min(tileHeight, r.getSizeY());
+  }
+
+  /**
+   * Check that one tile of every plane that will be streamed fits in the
+   * memory budget.
+   *
+   * @throws FormatException if a tile is larger than the memory budget
+   */
+  private void checkTileSize() throws FormatException {
+    for (int series=0; series<reader.getSeriesCount(); series++) {
+      reader.setSeries(series);
+      if (getPlaneSize(reader) <= memoryBudget) {
+        continue;
+      }
+      int tileWidth = getTileWidth(reader);
+      int tileHeight = getTileHeight(reader);
+      long tileSize = getRegionSize(reader, tileWidth, tileHeight);
+      if (tileSize > memoryBudget) {
+        throw new FormatException("Tiles of " + tileWidth + "x" +
+          tileHeight + " pixels in series #" + series + " need " + tileSize +
+          " bytes, more than the memory budget of " + memoryBudget);
+      }
+    }
+  }
+
+  /**
+   * Compute the size of a plane in the reader's current series without
+   * overflowing for planes larger than 2 GB.
+   *
+   * @param r the initialized reader
+   * @return the number of bytes in one plane
+   */
+  private static long getPlaneSize(IFormatReader r) {
+    return getRegionSize(r, r.getSizeX(), r.getSizeY());
+  }
+
+  /**
+   * Compute the size of a region of a plane in the reader's current series
+   * without overflowing.
+   *
+   * @param r the initialized reader
+   * @param width the width of the region
+   * @param height the height of the region
+   * @return the number of bytes in the region
+   */
+  private static long getRegionSize(IFormatReader r, int width, int height) {
+    return (long) width * height * r.getRGBChannelCount() *
+      FormatTools.getBytesPerPixel(r.getPixelType());
+  }
+
+  /**
+   * Save every plane in the input file to the output file, decoding planes
+   * on a pool of worker threads. A bounded window of planes is decoded ahead
+   * of the writer, which consumes them strictly in series and plane order.
+   */
+  private void convertPlanesParallel() {
+    // list every (series, image) pair in the order the writer expects them
+    List<int[]> units = new ArrayList<int[]>();
+    for (int series=0; series<reader.getSeriesCount(); series++) {
+      reader.setSeries(series);
+      for (int image=0; image<reader.getImageCount(); image++) {
+        if (!isDone(series, image)) {
+          units.add(new int[] {series, image});
+        }
+      }
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      workerReaders = new ArrayBlockingQueue<IFormatReader>(threads);
+      for (int i=0; i<threads; i++) {
+        workerReaders.add(openReader(null));
+      }
+
+      // limit the number of decoded planes held in memory at once
+      int window = 2 * threads;
+      Deque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+      int submitted = 0;
+      int currentSeries = -1;
+
+      for (int[] unit : units) {
+        while (submitted < units.size() && pending.size() < window) {
+          int[] next = units.get(submitted++);
+          pending.add(executor.submit(() -> decodePlane(next[0], next[1])));
+        }
+
+        int series = unit[0];
+        int image = unit[1];
+        if (series != currentSeries) {
+          try {
+            writer.setSeries(series);
+          }
+          catch (FormatException e) {
+            System.err.println("Failed to set writer's series #" + series);
+            e.printStackTrace();
+            break;
+          }
+          currentSeries = series;
+        }
+
+        Exception exception = null;
+        try {
+          byte[] plane = pending.poll().get();
+          writer.saveBytes(image, plane);
+          metrics.countPlane();
+          commit(series, image, plane);
+        }
+        catch (ExecutionException e) {
+          exception = e.getCause() instanceof Exception ?
+            (Exception) e.getCause() : e;
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          exception = e;
+        }
+        catch (IOException e) {
+          exception = e;
+        }
+        catch (FormatException e) {
+          exception = e;
+        }
+        if (exception != null) {
+          System.err.println("Failed to convert image #" + image +
+            " in series #" + series);
+          exception.printStackTrace();
+          if (exception instanceof InterruptedException) {
+            break;
+          }
+        }
+        if (!shouldContinue(series, image)) {
+          break;
+        }
       }
     }
+    catch (FormatException e) {
+      System.err.println("Failed to initialize worker readers.");
+      e.printStackTrace();
+    }
+    catch (IOException e) {
+      System.err.println("Failed to initialize worker readers.");
+      e.printStackTrace();
+    }
+    finally {
+      // decodes already running still hold worker readers, which must be
+      // back in the queue before cleanup() closes them
+      executor.shutdownNow();
+      awaitTermination(executor);
+    }
+  }
+
+  /**
+   * Save every plane in the input file to the output file, reading planes on
+   * a background thread. The read stage fills buffers taken from a ring of
+   * {@link #queueDepth} + 1 buffers and the write stage (the calling thread)
+   * hands each buffer back once the plane has been saved, so no more than
+   * {@link #queueDepth} planes are ever waiting to be written.
+   */
+  private void convertPlanesPipelined() {
+    final BlockingQueue<DecodedPlane> filled =
+      new ArrayBlockingQueue<DecodedPlane>(queueDepth);
+    final BlockingQueue<byte[]> free =
+      new ArrayBlockingQueue<byte[]>(queueDepth + 1);
+    for (int i=0; i<=queueDepth; i++) {
+      // buffers are sized on first use, as plane sizes may differ per series
+      free.add(new byte[0]);
+    }
+    // set when the write stage stops early, so that no more planes are read
+    final AtomicBoolean stopped = new AtomicBoolean();
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<Void> readStage = executor.submit(() -> {
+      try {
+        for (int series=0; series<reader.getSeriesCount(); series++) {
+          reader.setSeries(series);
+          int planeSize = FormatTools.getPlaneSize(reader);
+          for (int image=0; image<reader.getImageCount(); image++) {
+            if (stopped.get()) {
+              return null;
+            }
+            if (isDone(series, image)) {
+              continue;
+            }
+            byte[] buf = free.take();
+            if (buf.length != planeSize) {
+              buf = new byte[planeSize];
+            }
+            DecodedPlane plane = new DecodedPlane(series, image, buf);
+            try {
+              reader.openBytes(image, buf);
+            }
+            catch (IOException e) {
+              plane.error = e;
+            }
+            catch (FormatException e) {
+              plane.error = e;
+            }
+            filled.put(plane);
+          }
+        }
+      }
+      finally {
+        filled.put(DecodedPlane.END);
+      }
+      return null;
+    });
+
+    try {
+      int currentSeries = -1;
+      DecodedPlane plane;
+      while ((plane = filled.take()) != DecodedPlane.END) {
+        if (plane.series != currentSeries) {
+          try {
+            writer.setSeries(plane.series);
+          }
+          catch (FormatException e) {
+            System.err.println("Failed to set writer's series #" +
+              plane.series);
+            e.printStackTrace();
+            break;
+          }
+          currentSeries = plane.series;
+        }
+
+        Exception exception = plane.error;
+        if (exception == null) {
+          try {
+            writer.saveBytes(plane.image, plane.buf);
+            metrics.countPlane();
+            commit(plane.series, plane.image, plane.buf);
+          }
+          catch (IOException e) {
+            exception = e;
+          }
+          catch (FormatException e) {
+            exception = e;
+          }
+        }
+        if (exception != null) {
+          System.err.println("Failed to convert image #" + plane.image +
+            " in series #" + plane.series);
+          exception.printStackTrace();
+        }
+        free.put(plane.buf);
+        if (!shouldContinue(plane.series, plane.image)) {
+          break;
+        }
+      }
+      if (plane == DecodedPlane.END) {
+        // surface any failure that ended the read stage early
+        readStage.get();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      System.err.println("Interrupted while converting planes.");
+    }
+    catch (ExecutionException e) {
+      System.err.println("Failed to read planes.");
+      e.getCause().printStackTrace();
+    }
+    finally {
+      stopped.set(true);
+      executor.shutdownNow();
+      // if the write stage stopped early, the read stage may be blocked
+      // handing over a plane or the end marker; keep emptying the queue
+      // until it has finished with the reader, before cleanup() closes it
+      boolean interrupted = false;
+      while (!executor.isTerminated()) {
+        filled.clear();
+        try {
+          executor.awaitTermination(100, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Decode a single plane using one of the worker readers.
+   *
+   * @param series the series containing the plane
+   * @param image the index of the plane within the series
+   * @return the decoded pixels
+   */
+  private byte[] decodePlane(int series, int image)
+    throws FormatException, IOException, InterruptedException
+  {
+    IFormatReader workerReader = workerReaders.take();
+    try {
+      workerReader.setSeries(series);
+      return workerReader.openBytes(image);
+    }
+    finally {
+      workerReaders.add(workerReader);
+    }
+  }
+
+  /**
+   * Wait for every task of a shut down executor to finish, so that no task
+   * is still using a reader when it is closed. Interrupts are deferred until
+   * the executor has terminated.
+   *
+   * @param executor the executor, already shut down
+   */
+  private static void awaitTermination(ExecutorService executor) {
+    boolean interrupted = false;
+    while (!executor.isTerminated()) {
+      try {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      }
+      catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
   }
 
   /** Close the file reader and writer. */
@@ -179,6 +1018,15 @@ public class FileConvert {
     try {
       reader.close();
       writer.close();
+      if (workerReaders != null) {
+        for (IFormatReader workerReader : workerReaders) {
+          workerReader.close();
+        }
+        workerReaders = null;
+      }
+      if (checkpoint != null) {
+        checkpoint.close();
+      }
     }
     catch (IOException e) {
       System.err.println("Failed to cleanup reader and writer.");
@@ -186,15 +1034,131 @@ public class FileConvert {
     }
   }
 
+  /** A plane passed from the read stage to the write stage. */
+  private static class DecodedPlane {
+
+    /** Marks the end of the stream of planes. */
+    static final DecodedPlane END = new DecodedPlane(-1, -1, null);
+
+    final int series;
+    final int image;
+    final byte[] buf;
+
+    /** The exception thrown while reading this plane, if any. */
+    Exception error;
+
+    DecodedPlane(int series, int image, byte[] buf) {
+      this.series = series;
+      this.image = image;
+      this.buf = buf;
+    }
+  }
+
   /**
    * To convert a file on the command line:
    * 
    * $ java FileConvert input-file.oib output-file.ome.tiff
-   * @param args Input File and Output file.
+   *
+   * To decode planes on several threads:
+   *
+   * $ java FileConvert input-file.oib output-file.ome.tiff --threads 8
+   *
+   * To overlap reading and writing, with up to 4 planes read ahead:
+   *
+   * $ java FileConvert input-file.oib output-file.ome.tiff --queue-depth 4
+   *
+   * To journal finished planes, so that an interrupted conversion to TIFF
+   * resumes where it stopped when run again:
+   *
+   * $ java FileConvert input-file.oib output-file.tif --checkpoint
+   *
+   * To report where time is spent, with a JSON summary in metrics.json:
+   *
+   * $ java FileConvert input-file.oib output-file.ome.tiff --metrics metrics.json
+   *
+   * To stream any plane larger than 64 MB tile by tile:
+   *
+   * $ java FileConvert input-file.svs output-file.ome.tiff --memory-budget 67108864
+   *
+   * To remember detected formats in detection.properties across runs:
+   *
+   * $ java FileConvert input-file.svs output-file.ome.tiff --detection-cache detection.properties
+   *
+   * To save parsed metadata in /tmp/memo, so later runs start immediately:
+   *
+   * $ java FileConvert input-file.svs output-file.ome.tiff --memo-dir /tmp/memo
+   *
+   * To save the metadata of files however quickly they parse, rather than
+   * only those taking longer than the Memoizer default:
+   *
+   * $ java FileConvert input-file.svs output-file.ome.tiff --memo-dir /tmp/memo --memo-min-elapsed 0
+   * @param args Input File and Output file, followed by optional flags.
    */
   public static void main(String[] args) {
     FileConvert converter = new FileConvert(args[0], args[1]);
+    File cacheFile = null;
+    File memoDir = null;
+    long minimumElapsed = Memoizer.DEFAULT_MINIMUM_ELAPSED;
+    for (int i=2; i<args.length; i++) {
+      if (args[i].equals("--threads")) {
+        converter.setThreads(Integer.parseInt(args[++i]));
+      }
+      else if (args[i].equals("--queue-depth")) {
+        converter.setQueueDepth(Integer.parseInt(args[++i]));
+      }
+      else if (args[i].equals("--metrics")) {
+        converter.setMetricsFile(args[++i]);
+      }
+      else if (args[i].equals("--checkpoint")) {
+        converter.setCheckpointing(true);
+      }
+      else if (args[i].equals("--memory-budget")) {
+        converter.setMemoryBudget(Long.parseLong(args[++i]));
+      }
+      else if (args[i].equals("--detection-cache")) {
+        cacheFile = new File(args[++i]);
+      }
+      else if (args[i].equals("--memo-dir")) {
+        memoDir = new File(args[++i]);
+      }
+      else if (args[i].equals("--memo-min-elapsed")) {
+        minimumElapsed = Long.parseLong(args[++i]);
+      }
+    }
+    if (memoDir != null) {
+      converter.setMetadataCache(new MetadataCache(memoDir, minimumElapsed));
+    }
+
+    DetectionCache cache = null;
+    if (cacheFile != null) {
+      cache = new DetectionCache();
+      if (cacheFile.exists()) {
+        try {
+          cache.load(cacheFile);
+        }
+        catch (IOException e) {
+          System.err.println("Failed to load detection cache " + cacheFile);
+          e.printStackTrace();
+        }
+      }
+      converter.setDetectionCache(cache);
+    }
+
     converter.convert();
+
+    if (converter.getMetadataCache() != null) {
+      System.out.println(converter.getMetadataCache());
+    }
+    if (cache != null) {
+      System.out.println(cache);
+      try {
+        cache.save(cacheFile);
+      }
+      catch (IOException e) {
+        System.err.println("Failed to save detection cache " + cacheFile);
+        e.printStackTrace();
+      }
+    }
   }
 
 }
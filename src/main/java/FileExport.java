@@ -31,6 +31,13 @@
  */
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import loci.common.services.DependencyException;
 import loci.common.services.ServiceException;
@@ -58,6 +65,24 @@ public class FileExport {
   /** The name of the output file. */
   private String outputFile;
 
+  private int width = 512;
+
+  private int height = 512;
+
+  private int pixelType = FormatTools.UINT16;
+
+  /** The number of planes, written as Z sections. */
+  private int planes = 1;
+
+  /** The number of threads used to generate planes. */
+  private int threads = 1;
+
+  private long seed;
+
+  private SyntheticPixels.Pattern pattern = SyntheticPixels.Pattern.RANDOM;
+
+  private double compressibility;
+
   /**
    * Construct a new FileExport that will save to the specified file.
    *
@@ -67,17 +92,68 @@ public class FileExport {
     this.outputFile = outputFile;
   }
 
-  /** Save a single 512x512 uint16 plane of random data. */
-  public void export() {
-    int width = 512, height = 512;
-    int pixelType = FormatTools.UINT16;
+  /**
+   * @param width the width of each plane in pixels
+   * @param height the height of each plane in pixels
+   */
+  public void setImageSize(int width, int height) {
+    this.width = width;
+    this.height = height;
+  }
+
+  /** @param pixelType the pixel type; @see loci.formats.FormatTools */
+  public void setPixelType(int pixelType) {
+    this.pixelType = pixelType;
+  }
 
+  /** @param planes the number of planes to write */
+  public void setPlaneCount(int planes) {
+    if (planes < 1) {
+      throw new IllegalArgumentException("Plane count must be positive");
+    }
+    this.planes = planes;
+  }
+
+  /**
+   * Set the number of threads used to generate planes. With more than one
+   * thread, planes are generated ahead of the writer, which still saves
+   * them from the calling thread in plane order.
+   *
+   * @param threads the number of generating threads, at least 1
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Thread count must be positive");
+    }
+    this.threads = threads;
+  }
+
+  /**
+   * Describe the generated data; @see SyntheticPixels.
+   *
+   * @param pattern the structure underlying each plane
+   * @param compressibility the fraction of each sample following the pattern
+   * @param seed the seed from which the data is derived
+   */
+  public void setData(SyntheticPixels.Pattern pattern, double compressibility,
+    long seed)
+  {
+    this.pattern = pattern;
+    this.compressibility = compressibility;
+    this.seed = seed;
+  }
+
+  /**
+   * Save planes of synthetic data, by default a single 512x512 uint16
+   * plane of random data.
+   */
+  public void export() {
     IMetadata omexml = initializeMetadata(width, height, pixelType);
 
-    // only save a plane if the file writer was initialized successfully
-    boolean initializationSuccess = initializeWriter(omexml);
+    // only save planes if the file writer was initialized successfully
+    boolean initializationSuccess = omexml != null && initializeWriter(omexml);
     if (initializationSuccess) {
-      savePlane(width, height, pixelType);
+      savePlanes();
     }
     cleanup();
   }
@@ -145,7 +221,7 @@ public class FileExport {
       // specify the dimensions of the images
       meta.setPixelsSizeX(new PositiveInteger(width), 0);
       meta.setPixelsSizeY(new PositiveInteger(height), 0);
-      meta.setPixelsSizeZ(new PositiveInteger(1), 0);
+      meta.setPixelsSizeZ(new PositiveInteger(planes), 0);
       meta.setPixelsSizeC(new PositiveInteger(1), 0);
       meta.setPixelsSizeT(new PositiveInteger(1), 0);
 
@@ -172,17 +248,102 @@ public class FileExport {
   }
 
   /**
-   * Generate a random plane of pixel data and save it to the output file.
+   * Generate every plane and save it to the output file. With more than one
+   * thread, a bounded window of planes is generated on a pool of threads
+   * while the calling thread saves earlier planes in order, so generating
+   * overlaps with writing.
+   */
+  private void savePlanes() {
+    SyntheticPixels pixels = new SyntheticPixels(width, height, pixelType);
+    pixels.setPattern(pattern);
+    pixels.setCompressibility(compressibility);
+    pixels.setSeed(seed);
+
+    if (threads == 1) {
+      byte[] plane = new byte[pixels.getPlaneSize()];
+      for (int no=0; no<planes; no++) {
+        pixels.fillPlane(no, plane);
+        if (!savePlane(no, plane)) {
+          return;
+        }
+      }
+      return;
+    }
+
+    TileBufferPool buffers = new TileBufferPool();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    int window = 2 * threads;
+    Deque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+    int submitted = 0;
+    long waiting = 0;
+    long saving = 0;
+    try {
+      for (int no=0; no<planes; no++) {
+        while (submitted < planes && pending.size() < window) {
+          final int index = submitted;
+          final byte[] buf = buffers.acquire(pixels.getPlaneSize());
+          pending.add(executor.submit(() -> {
+            pixels.fillPlane(index, buf);
+            return buf;
+          }));
+          submitted++;
+        }
+
+        long start = System.nanoTime();
+        byte[] plane = waitFor(pending.poll());
+        waiting += System.nanoTime() - start;
+
+        start = System.nanoTime();
+        if (!savePlane(no, plane)) {
+          return;
+        }
+        saving += System.nanoTime() - start;
+        buffers.release(plane);
+      }
+    }
+    catch (IOException e) {
+      System.err.println("Failed to generate plane.");
+      e.printStackTrace();
+      return;
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    System.out.println("Saved " + planes + " plane(s) in " +
+      saving / 1000000 + " ms, waited " + waiting / 1000000 +
+      " ms for planes to be generated");
+  }
+
+  /**
+   * Wait for a plane to be generated.
    *
-   * @param width the width of the image in pixels
-   * @param height the height of the image in pixels
-   * @param pixelType the pixel type of the image; @see loci.formats.FormatTools
+   * @param future the pending plane
+   * @return the generated plane
+   */
+  private static byte[] waitFor(Future<byte[]> future) throws IOException {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while generating planes");
+    }
+    catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Save a plane of pixel data to the output file.
+   *
+   * @param no the index of the plane
+   * @param plane the pixel data
+   * @return true if the plane was saved
    */
-  private void savePlane(int width, int height, int pixelType) {
-    byte[] plane = createImage(width, height, pixelType);
+  private boolean savePlane(int no, byte[] plane) {
     Exception exception = null;
     try {
-      writer.saveBytes(0, plane);
+      writer.saveBytes(no, plane);
     }
     catch (FormatException e) {
       exception = e;
@@ -194,25 +355,7 @@ public class FileExport {
       System.err.println("Failed to save plane.");
       exception.printStackTrace();
     }
-  }
-
-  /**
-   * Generate a random plane of pixel data.
-   *
-   * @param width the width of the image in pixels
-   * @param height the height of the image in pixels
-   * @param pixelType the pixel type of the image; @see loci.formats.FormatTools
-   */
-  private byte[] createImage(int width, int height, int pixelType) {
-    // create a blank image of the specified size
-    byte[] img =
-      new byte[width * height * FormatTools.getBytesPerPixel(pixelType)];
-
-    // fill it with random data
-    for (int i=0; i<img.length; i++) {
-      img[i] = (byte) (256 * Math.random());
-    }
-    return img;
+    return exception == null;
   }
 
   /** Close the file writer. */
@@ -230,11 +373,52 @@ public class FileExport {
    * To export a file to OME-TIFF:
    * 
    * $ java FileExport output-file.ome.tiff
-   * @param args Output file.
+   *
+   * To export 64 half-compressible 2048x2048 uint8 gradient planes,
+   * generated on 8 threads:
+   *
+   * $ java FileExport output-file.ome.tiff --size-x 2048 --size-y 2048 --pixel-type uint8 --planes 64 --pattern gradient --compressibility 0.5 --threads 8
+   *
+   * The pattern is one of random, gradient or checkerboard; --seed changes
+   * the data while keeping it reproducible.
+   * @param args Output file, followed by optional flags.
    * @throws java.lang.Exception thrown if an error occurred while exporting data.
    */
   public static void main(String[] args) throws Exception {
     FileExport exporter = new FileExport(args[0]);
+    int width = exporter.width;
+    int height = exporter.height;
+    SyntheticPixels.Pattern pattern = exporter.pattern;
+    double compressibility = exporter.compressibility;
+    long seed = exporter.seed;
+    for (int i=1; i<args.length; i++) {
+      if (args[i].equals("--size-x")) {
+        width = Integer.parseInt(args[++i]);
+      }
+      else if (args[i].equals("--size-y")) {
+        height = Integer.parseInt(args[++i]);
+      }
+      else if (args[i].equals("--pixel-type")) {
+        exporter.setPixelType(FormatTools.pixelTypeFromString(args[++i]));
+      }
+      else if (args[i].equals("--planes")) {
+        exporter.setPlaneCount(Integer.parseInt(args[++i]));
+      }
+      else if (args[i].equals("--threads")) {
+        exporter.setThreads(Integer.parseInt(args[++i]));
+      }
+      else if (args[i].equals("--pattern")) {
+        pattern = SyntheticPixels.Pattern.valueOf(args[++i].toUpperCase());
+      }
+      else if (args[i].equals("--compressibility")) {
+        compressibility = Double.parseDouble(args[++i]);
+      }
+      else if (args[i].equals("--seed")) {
+        seed = Long.parseLong(args[++i]);
+      }
+    }
+    exporter.setImageSize(width, height);
+    exporter.setData(pattern, compressibility, seed);
     exporter.export();
   }
 
@@ -30,11 +30,21 @@
  * #L%
  */
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 
 import loci.common.services.DependencyException;
 import loci.common.services.ServiceException;
@@ -42,11 +52,13 @@ import loci.common.services.ServiceFactory;
 import loci.formats.CoreMetadata;
 import loci.formats.FormatException;
 import loci.formats.FormatTools;
+import loci.formats.IFormatWriter;
 import loci.formats.ImageWriter;
 import loci.formats.meta.IMetadata;
 import loci.formats.ome.OMEXMLMetadata;
 import loci.formats.services.OMEXMLService;
 import loci.formats.MetadataTools;
+import loci.formats.out.TiffWriter;
 
 import ome.xml.model.enums.DimensionOrder;
 import ome.xml.model.enums.EnumerationException;
@@ -61,13 +73,44 @@ import ome.xml.model.enums.NamingConvention;
  */
 public class FileExportSPW {
 
-  private final int sizeT = 3;
+  /**
+   * Files expected to grow beyond this size are written as BigTIFF; the
+   * margin below 4 GB leaves room for the IFDs and the OME-XML block.
+   */
+  private static final long BIG_TIFF_THRESHOLD = 3L << 30;
+
+  private int sizeT = 3;
+
+  private int rows = 2;
+
+  private int cols = 2;
+
+  private int fovPerWell = 2;
+
+  private int width = 4;
+
+  private int height = 4;
+
+  private int pixelType = FormatTools.UINT16;
+
+  /** The number of threads used to generate planes. */
+  private int threads = 1;
 
-  private final int rows = 2;
+  /** Whether to populate the metadata with {@link PlateMetadataBuilder}. */
+  private boolean bulkMetadata;
 
-  private final int cols = 2;
+  /** The file to which the plate is described in OME-XML, or null. */
+  private String metadataFile;
 
-  private final int fovPerWell = 2;
+  /** The pattern of synthetic planes, or null for the marker planes. */
+  private SyntheticPixels.Pattern pattern;
+
+  private double compressibility;
+
+  private long seed;
+
+  /** The generator of synthetic planes, created by {@link #export()}. */
+  private SyntheticPixels synthetic;
 
   /** The file writer. */
   private ImageWriter writer;
@@ -85,21 +128,161 @@ public class FileExportSPW {
     this.outputFile = outputFile;
   }
 
-  /** Save a single uint16 plane of data. */
+  /**
+   * Set the number of rows and columns of wells on the plate.
+   *
+   * @param rows the number of rows; rows after Z are named AA, AB, ...
+   * @param cols the number of columns
+   */
+  public void setPlateSize(int rows, int cols) {
+    if (rows < 1 || cols < 1) {
+      throw new IllegalArgumentException("Plate must have at least one well");
+    }
+    this.rows = rows;
+    this.cols = cols;
+  }
+
+  /**
+   * Set the plate size from a standard well count, e.g. 96 for an 8 x 12
+   * plate or 1536 for a 32 x 48 plate.
+   *
+   * @param wells one of 6, 12, 24, 48, 96, 384 or 1536
+   */
+  public void setWellCount(int wells) {
+    int[] plateSize = PlateMetadataBuilder.getPlateSize(wells);
+    setPlateSize(plateSize[0], plateSize[1]);
+  }
+
+  /**
+   * @param fovPerWell the number of fields of view in each well
+   */
+  public void setFieldsPerWell(int fovPerWell) {
+    if (fovPerWell < 1) {
+      throw new IllegalArgumentException("Wells must have at least one field");
+    }
+    this.fovPerWell = fovPerWell;
+  }
+
+  /**
+   * @param sizeT the number of timepoints in each field
+   */
+  public void setSizeT(int sizeT) {
+    if (sizeT < 1) {
+      throw new IllegalArgumentException("SizeT must be positive");
+    }
+    this.sizeT = sizeT;
+  }
+
+  /**
+   * @param width the width of each plane in pixels
+   * @param height the height of each plane in pixels
+   */
+  public void setImageSize(int width, int height) {
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Image size must be positive");
+    }
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * @param pixelType the pixel type of each plane; @see loci.formats.FormatTools
+   */
+  public void setPixelType(int pixelType) {
+    this.pixelType = pixelType;
+  }
+
+  /**
+   * Set the number of threads used to generate planes. With more than one
+   * thread, planes are generated ahead of the writer, which still saves
+   * them from the calling thread in series and plane order.
+   *
+   * @param threads the number of generating threads, at least 1
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Thread count must be positive");
+    }
+    this.threads = threads;
+  }
+
+  /**
+   * Populate the metadata with {@link PlateMetadataBuilder}, which shares
+   * the values common to every field, rather than with the field by field
+   * code of this example.
+   *
+   * @param bulkMetadata true to use the builder
+   */
+  public void setBulkMetadata(boolean bulkMetadata) {
+    this.bulkMetadata = bulkMetadata;
+  }
+
+  /**
+   * Also describe the plate in a metadata-only OME-XML file, streamed by
+   * {@link PlateMetadataBuilder#writeXML} in constant memory however large
+   * the plate is.
+   *
+   * @param metadataFile the OME-XML file to write, or null for none
+   */
+  public void setMetadataFile(String metadataFile) {
+    this.metadataFile = metadataFile;
+  }
+
+  /**
+   * Fill planes with {@link SyntheticPixels} rather than a background with
+   * one marker pixel, to give writers realistic data to compress.
+   *
+   * @param pattern the structure underlying each plane, or null for the
+   *   marker planes
+   * @param compressibility the fraction of each sample following the pattern
+   * @param seed the seed from which the data is derived
+   */
+  public void setSyntheticData(SyntheticPixels.Pattern pattern,
+      double compressibility, long seed) {
+    this.pattern = pattern;
+    this.compressibility = compressibility;
+    this.seed = seed;
+  }
+
+  /** Save every plane of every field of the plate. */
   public void export() {
-    int width = 4, height = 4;
-    int pixelType = FormatTools.UINT16;
-    Exception exception = null;
+    long planeSize = (long) width * height *
+      FormatTools.getBytesPerPixel(pixelType);
+    if (planeSize > Integer.MAX_VALUE) {
+      System.err.println("Planes of " + width + " x " + height +
+        " pixels are too large to generate.");
+      return;
+    }
+
+    synthetic = null;
+    if (pattern != null) {
+      synthetic = new SyntheticPixels(width, height, pixelType);
+      synthetic.setPattern(pattern);
+      synthetic.setCompressibility(compressibility);
+      synthetic.setSeed(seed);
+    }
 
-    IMetadata omexml = initializeMetadata(width, height, pixelType);
+    IMetadata omexml = bulkMetadata ?
+        buildMetadata(width, height, pixelType) :
+        initializeMetadata(width, height, pixelType);
+    if (omexml == null) {
+      return;
+    }
+    if (metadataFile != null) {
+      writeMetadataFile();
+    }
 
     int series = 0;
     int nSeries = rows * cols * fovPerWell;
 
     // only save data if the file writer was initialized successfully
-    boolean initializationSuccess = initializeWriter(omexml);
+    boolean initializationSuccess =
+      initializeWriter(omexml, planeSize * nSeries * sizeT);
 
-    if (initializationSuccess) {
+    if (initializationSuccess && threads > 1) {
+      exportParallel(nSeries, (int) planeSize);
+    }
+    else if (initializationSuccess) {
       while (series < nSeries) {
         for (int p = 0; p < sizeT; p++) {
           savePlane(width, height, pixelType, p, series);
@@ -118,21 +301,94 @@ public class FileExportSPW {
     cleanup();
   }
 
+  /**
+   * Generate planes on a pool of threads and save them from the calling
+   * thread. A bounded window of planes is generated ahead of the writer,
+   * which saves them in the same order as a sequential export.
+   *
+   * @param nSeries the number of images on the plate
+   * @param planeSize the size of a plane in bytes
+   */
+  private void exportParallel(int nSeries, int planeSize) {
+    TileBufferPool buffers = new TileBufferPool();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    int window = 2 * threads;
+    int nPlanes = nSeries * sizeT;
+    Deque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+    int submitted = 0;
+    try {
+      for (int plane = 0; plane < nPlanes; plane++) {
+        while (submitted < nPlanes && pending.size() < window) {
+          final int series = submitted / sizeT;
+          final int index = submitted % sizeT;
+          final byte[] buf = buffers.acquire(planeSize);
+          pending.add(executor.submit(
+            () -> fillPlane(buf, width, height, pixelType, index, series)));
+          submitted++;
+        }
+
+        int series = plane / sizeT;
+        int index = plane % sizeT;
+        if (index == 0 && series > 0) {
+          writer.setSeries(series);
+        }
+        byte[] buf = waitFor(pending.poll());
+        writer.saveBytes(index, buf);
+        buffers.release(buf);
+      }
+    } catch (FormatException e) {
+      System.err.println("Failed to save plane.");
+      e.printStackTrace();
+    } catch (IOException e) {
+      System.err.println("Failed to save plane.");
+      e.printStackTrace();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Wait for a plane to be generated.
+   *
+   * @param future the pending plane
+   * @return the generated plane
+   */
+  private static byte[] waitFor(Future<byte[]> future)
+      throws FormatException, IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while generating planes");
+    } catch (ExecutionException e) {
+      throw new FormatException(e.getCause());
+    }
+  }
+
   /**
    * Set up the file writer.
    *
    * @param omexml
    *          the IMetadata object that is to be associated with the writer
+   * @param dataSize
+   *          the total number of pixel bytes that will be written
    * @return true if the file writer was successfully initialized; false if an
    *         error occurred
    */
-  private boolean initializeWriter(IMetadata omexml) {
+  private boolean initializeWriter(IMetadata omexml, long dataSize) {
     // create the file writer and associate the OME-XML metadata with it
     writer = new ImageWriter();
     writer.setMetadataRetrieve(omexml);
 
     Exception exception = null;
     try {
+      if (dataSize > BIG_TIFF_THRESHOLD) {
+        // 32 bit TIFF offsets cannot address the whole file
+        IFormatWriter format = writer.getWriter(outputFile);
+        if (format instanceof TiffWriter) {
+          ((TiffWriter) format).setBigTiff(true);
+        }
+      }
       writer.setId(outputFile);
     } catch (FormatException e) {
       exception = e;
@@ -181,8 +437,8 @@ public class FileExportSPW {
       PositiveInteger pwidth = new PositiveInteger(width);
       PositiveInteger pheight = new PositiveInteger(height);
 
-      char rowChar = 'A';
       for (int row = 0; row < rows; row++) {
+        String rowName = PlateMetadataBuilder.getRowName(row);
         for (int column = 0; column < cols; column++) {
 
           // set up well
@@ -194,7 +450,7 @@ public class FileExportSPW {
           for (int fov = 0; fov < fovPerWell; fov++) {
 
             // Create Image 
-            String imageName = rowChar + ":" + Integer.toString(column+1)
+            String imageName = rowName + ":" + Integer.toString(column+1)
                 + ":FOV:" + Integer.toString(fov+1);
             String imageID = MetadataTools.createLSID("Image", well, fov);
             meta.setImageID(imageID, series);
@@ -246,7 +502,6 @@ public class FileExportSPW {
           } // end of samples
           well++;
         }
-        rowChar++;
       }
 
       return meta;
@@ -263,6 +518,50 @@ public class FileExportSPW {
     return null;
   }
 
+  /** @return a builder describing the plate exported by this example */
+  private PlateMetadataBuilder createBuilder() {
+    PlateMetadataBuilder builder =
+        new PlateMetadataBuilder(rows, cols, fovPerWell);
+    builder.setName("First test Plate");
+    builder.setImageSize(width, height);
+    builder.setDimensions(1, 1, sizeT);
+    builder.setPixelType(pixelType);
+    return builder;
+  }
+
+  /**
+   * Populate the same plate through {@link PlateMetadataBuilder}, which
+   * shares the values common to every field instead of creating them per
+   * field.
+   *
+   * @param width
+   *          the width (in pixels) of the image
+   * @param height
+   *          the height (in pixels) of the image
+   * @param pixelType
+   *          the pixel type of the image; @see loci.formats.FormatTools
+   */
+  private IMetadata buildMetadata(int width, int height, int pixelType) {
+    try {
+      return createBuilder().build();
+    } catch (EnumerationException e) {
+      System.err.println("Failed to populate OME-XML metadata object.");
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /** Stream a metadata-only OME-XML description of the plate. */
+  private void writeMetadataFile() {
+    try (OutputStream out =
+        new BufferedOutputStream(new FileOutputStream(metadataFile))) {
+      createBuilder().writeXML(out);
+    } catch (IOException e) {
+      System.err.println("Failed to write plate metadata to " + metadataFile);
+      e.printStackTrace();
+    }
+  }
+
   /**
    * Add ModuloAlong annotation.
    *
@@ -329,31 +628,89 @@ public class FileExportSPW {
     // create a blank image of the specified size
     int bpp = FormatTools.getBytesPerPixel(pixelType);
     byte[] img = new byte[width * height * bpp];
+    return fillPlane(img, width, height, pixelType, index, series);
+  }
+
+  /**
+   * Fill a plane with synthetic data if requested, or with the background
+   * and marker pixel otherwise.
+   */
+  private byte[] fillPlane(byte[] img, int width, int height, int pixelType,
+      int index, int series) {
+    if (synthetic != null) {
+      synthetic.fillPlane(series * sizeT + index, img);
+      return img;
+    }
+    return fillImage(img, width, height, pixelType, index, series);
+  }
 
+  /**
+   * Fill a plane with pixel data. Safe to call from several threads at once
+   * on different buffers.
+   *
+   * @param img
+   *          the buffer to fill, of exactly one plane
+   * @param width
+   *          the width of the image in pixels
+   * @param height
+   *          the height of the image in pixels
+   * @param pixelType
+   *          the pixel type of the image; @see loci.formats.FormatTools
+   */
+  private static byte[] fillImage(byte[] img, int width, int height,
+      int pixelType, int index, int series) {
+    int bpp = FormatTools.getBytesPerPixel(pixelType);
     ByteBuffer bb = ByteBuffer.wrap(img);
     bb.order(ByteOrder.BIG_ENDIAN);
 
-    // fill it with background
-    for (int i = 0; i < img.length; i += bpp) {
-      bb.putShort(i, (short) 200);
+    // fill it with background, doubling the filled region with each copy
+    putValue(bb, 0, pixelType, 200);
+    for (int filled = bpp; filled < img.length; filled *= 2) {
+      System.arraycopy(img, 0, img, filled,
+          Math.min(filled, img.length - filled));
     }
 
     // then set 1 pixel to non-zero. Different values in each plane
+    int marker = (series % (width * height)) * bpp;
     switch (index) {
       case 0:
-        bb.putShort(series * bpp, (short) 1000);
+        putValue(bb, marker, pixelType, 1000);
         break;
       case 1:
-        bb.putShort(series * bpp, (short) 700);
+        putValue(bb, marker, pixelType, 700);
         break;
       case 2:
-        bb.putShort(series * bpp, (short) 300);
+        putValue(bb, marker, pixelType, 300);
         break;
     }
 
     return img;
   }
 
+  /** Store a value at the given offset in the plane's pixel type. */
+  private static void putValue(ByteBuffer bb, int offset, int pixelType,
+      int value) {
+    switch (pixelType) {
+      case FormatTools.FLOAT:
+        bb.putFloat(offset, value);
+        break;
+      case FormatTools.DOUBLE:
+        bb.putDouble(offset, value);
+        break;
+      default:
+        switch (FormatTools.getBytesPerPixel(pixelType)) {
+          case 1:
+            bb.put(offset, (byte) value);
+            break;
+          case 2:
+            bb.putShort(offset, (short) value);
+            break;
+          default:
+            bb.putInt(offset, value);
+        }
+    }
+  }
+
   /** Close the file writer. */
   private void cleanup() {
     try {
@@ -368,7 +725,22 @@ public class FileExportSPW {
    *
    * $ java FileExportSPW output-file.ome.tiff
    *
-   * @param args Output file
+   * To export a 1536 well plate with 4 fields per well of 1024 x 1024
+   * pixels, generating planes on 8 threads:
+   *
+   * $ java FileExportSPW output-file.ome.tiff --wells 1536 --fields 4 --size-x 1024 --size-y 1024 --threads 8
+   *
+   * The plate can also be given as --rows and --columns, and each field
+   * as --size-t timepoints of --pixel-type pixels, e.g. uint8 or float.
+   * With --bulk-metadata the metadata is populated by PlateMetadataBuilder,
+   * and with --metadata-xml plate.ome.xml the plate is also described in a
+   * metadata-only OME-XML file.
+   *
+   * To fill planes with synthetic data instead of a single marker pixel:
+   *
+   * $ java FileExportSPW output-file.ome.tiff --pattern gradient --compressibility 0.5 --seed 1
+   *
+   * @param args Output file, followed by optional flags
    * @throws Exception thrown if an error occurred while exporting data.
    */
   public static void main(String[] args) throws Exception {
@@ -385,6 +757,64 @@ public class FileExportSPW {
     }
 
     FileExportSPW exporter = new FileExportSPW(fileName);
+    int rows = exporter.rows;
+    int cols = exporter.cols;
+    int width = exporter.width;
+    int height = exporter.height;
+    SyntheticPixels.Pattern pattern = null;
+    double compressibility = 0;
+    long seed = 0;
+    for (int i = 1; i < args.length; i++) {
+      if (args[i].equals("--wells")) {
+        exporter.setWellCount(Integer.parseInt(args[++i]));
+        rows = exporter.rows;
+        cols = exporter.cols;
+      }
+      else if (args[i].equals("--rows")) {
+        rows = Integer.parseInt(args[++i]);
+      }
+      else if (args[i].equals("--columns")) {
+        cols = Integer.parseInt(args[++i]);
+      }
+      else if (args[i].equals("--fields")) {
+        exporter.setFieldsPerWell(Integer.parseInt(args[++i]));
+      }
+      else if (args[i].equals("--size-x")) {
+        width = Integer.parseInt(args[++i]);
+      }
+      else if (args[i].equals("--size-y")) {
+        height = Integer.parseInt(args[++i]);
+      }
+      else if (args[i].equals("--size-t")) {
+        exporter.setSizeT(Integer.parseInt(args[++i]));
+      }
+      else if (args[i].equals("--pixel-type")) {
+        exporter.setPixelType(FormatTools.pixelTypeFromString(args[++i]));
+      }
+      else if (args[i].equals("--threads")) {
+        exporter.setThreads(Integer.parseInt(args[++i]));
+      }
+      else if (args[i].equals("--bulk-metadata")) {
+        exporter.setBulkMetadata(true);
+      }
+      else if (args[i].equals("--metadata-xml")) {
+        exporter.setMetadataFile(args[++i]);
+      }
+      else if (args[i].equals("--pattern")) {
+        pattern = SyntheticPixels.Pattern.valueOf(args[++i].toUpperCase());
+      }
+      else if (args[i].equals("--compressibility")) {
+        compressibility = Double.parseDouble(args[++i]);
+      }
+      else if (args[i].equals("--seed")) {
+        seed = Long.parseLong(args[++i]);
+      }
+    }
+    exporter.setPlateSize(rows, cols);
+    exporter.setImageSize(width, height);
+    if (pattern != null) {
+      exporter.setSyntheticData(pattern, compressibility, seed);
+    }
     exporter.export();
   }
 }
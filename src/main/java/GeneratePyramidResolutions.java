@@ -30,7 +30,23 @@
  * #L%
  */
 
-import java.util.Arrays;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import loci.common.image.IImageScaler;
 import loci.common.image.SimpleImageScaler;
@@ -39,63 +55,545 @@ import loci.formats.*;
 import loci.formats.ome.OMEPyramidStore;
 import loci.formats.services.OMEXMLService;
 
-import ome.xml.model.enums.DimensionOrder;
-import ome.xml.model.enums.PixelType;
 import ome.xml.model.primitives.PositiveInteger;
 
 /**
  * Demonstrates writing an image pyramid the source dataset
  * only contains the full resolution image.
+ *
+ * A full resolution plane is never held in memory.  Level 0 is read one
+ * strip of tiles at a time; each strip is downsampled into the next level,
+ * which in turn is downsampled into the level after it, so only one strip
+ * per level is resident.  Sub-resolutions are spooled to temporary files
+ * until the writer reaches them.
+ *
+ * Every plane of every series gets a pyramid.  With more than one thread,
+ * planes are built independently on a fork/join pool and the calling thread
+ * writes them in series, resolution, plane order.  At most two planes per
+ * thread are built ahead of the writer, so only that many full resolution
+ * spools exist at once.
  */
 public class GeneratePyramidResolutions {
 
-  public static void main(String[] args) throws Exception {
-    if (args.length < 4) {
-      System.out.println("GeneratePyramidResolutions input-file scale-factor resolution-count output-file");
-      System.exit(1);
-    }
-    String in = args[0];
-    String out = args[3];
-    int scale = Integer.parseInt(args[1]);
-    int resolutions = Integer.parseInt(args[2]);
+  private static final int DEFAULT_TILE_SIZE = 256;
+
+  private String in;
+  private String out;
+  private int scale;
+  private int resolutions;
+  private int tileSize = DEFAULT_TILE_SIZE;
+  private int threads = 1;
+
+  private IFormatReader reader;
+  private ImageWriter writer;
+  private OMEPyramidStore meta;
+  private final TileBufferPool buffers = new TileBufferPool();
+  private final ConversionMetrics metrics = new ConversionMetrics();
+
+  /** Number of rows in each strip; a multiple of both tile size and scale. */
+  private int stripHeight;
+
+  /** Readers used by the pool, one per worker thread. */
+  private BlockingQueue<IFormatReader> workerReaders;
+
+  public GeneratePyramidResolutions(String in, String out, int scale,
+    int resolutions)
+  {
+    this.in = in;
+    this.out = out;
+    this.scale = scale;
+    this.resolutions = resolutions;
+  }
+
+  /** Sets the requested output tile size, in pixels. */
+  public void setTileSize(int tileSize) {
+    this.tileSize = tileSize;
+  }
+
+  /** Sets the number of planes to build concurrently. */
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+
+  public ConversionMetrics getMetrics() {
+    return metrics;
+  }
 
-    ImageReader reader = new ImageReader();
+  public void generate() throws Exception {
+    reader = new InstrumentedReader(new ImageReader(), metrics);
     ServiceFactory factory = new ServiceFactory();
     OMEXMLService service = factory.getInstance(OMEXMLService.class);
-    OMEPyramidStore meta = (OMEPyramidStore) service.createOMEXMLMetadata();
+    meta = (OMEPyramidStore) service.createOMEXMLMetadata();
     reader.setMetadataStore(meta);
 
     reader.setId(in);
 
-    for (int i=1; i<resolutions; i++) {
-      int divScale = (int) Math.pow(scale, i);
-      meta.setResolutionSizeX(new PositiveInteger(reader.getSizeX() / divScale), 0, i);
-      meta.setResolutionSizeY(new PositiveInteger(reader.getSizeY() / divScale), 0, i);
+    for (int s=0; s<reader.getSeriesCount(); s++) {
+      reader.setSeries(s);
+      for (int i=1; i<resolutions; i++) {
+        int divScale = (int) Math.pow(scale, i);
+        meta.setResolutionSizeX(new PositiveInteger(reader.getSizeX() / divScale), s, i);
+        meta.setResolutionSizeY(new PositiveInteger(reader.getSizeY() / divScale), s, i);
+      }
     }
+    reader.setSeries(0);
 
-    IImageScaler scaler = new SimpleImageScaler();
-    byte[] img = reader.openBytes(0);
-
-    // write image plane to disk
+    // write image planes to disk
     System.out.println("Writing image to '" + out + "'...");
-    IFormatWriter writer = new ImageWriter();
+    writer = new InstrumentedWriter(metrics);
     writer.setMetadataRetrieve(meta);
+    writer.setInterleaved(reader.isInterleaved());
+    IFormatWriter w = writer.getWriter(out);
+    int tileWidth = w.setTileSizeX(Math.min(tileSize, reader.getSizeX()));
+    int tileHeight = w.setTileSizeY(Math.min(tileSize, reader.getSizeY()));
+    stripHeight = tileHeight % scale == 0 ? tileHeight : tileHeight * scale;
+    System.out.println("Tile size = " + tileWidth + " x " + tileHeight);
+
     writer.setId(out);
-    writer.saveBytes(0, img);
-    int type = reader.getPixelType();
-    for (int i=1; i<resolutions; i++) {
-      writer.setResolution(i);
-      int x = meta.getResolutionSizeX(0, i).getValue();
-      int y = meta.getResolutionSizeY(0, i).getValue();
-      byte[] downsample = scaler.downsample(img, reader.getSizeX(),
-        reader.getSizeY(), Math.pow(scale, i),
-        FormatTools.getBytesPerPixel(type), reader.isLittleEndian(),
-        FormatTools.isFloatingPoint(type), reader.getRGBChannelCount(),
-        reader.isInterleaved());
-      writer.saveBytes(0, downsample);
-    }
-    writer.close();
-    reader.close();
+
+    ForkJoinPool pool = null;
+    try {
+      if (threads > 1) {
+        workerReaders = new ArrayBlockingQueue<IFormatReader>(threads);
+        for (int i=0; i<threads; i++) {
+          IFormatReader workerReader =
+            new InstrumentedReader(new ImageReader(), metrics);
+          workerReader.setId(in);
+          workerReaders.add(workerReader);
+        }
+        pool = new ForkJoinPool(threads);
+      }
+
+      for (int s=0; s<reader.getSeriesCount(); s++) {
+        reader.setSeries(s);
+        writer.setSeries(s);
+        writeSeries(s, pool);
+      }
+    }
+    finally {
+      if (pool != null) {
+        // planes already being built still hold worker readers, which must
+        // be back in the queue before cleanup() closes them
+        pool.shutdownNow();
+        awaitTermination(pool);
+      }
+      cleanup();
+    }
+  }
+
+  /**
+   * Writes every resolution of every plane in the given series.  Level 0
+   * of each plane is written first, in plane order, followed by each
+   * sub-resolution in turn.
+   */
+  private void writeSeries(int series, ForkJoinPool pool)
+    throws FormatException, IOException
+  {
+    int imageCount = reader.getImageCount();
+    File[][] spools = new File[imageCount][];
+    Deque<Future<File[]>> pending = new ArrayDeque<Future<File[]>>();
+    try {
+      writer.setResolution(0);
+      if (pool == null) {
+        for (int no=0; no<imageCount; no++) {
+          spools[no] = new PyramidBuilder(reader, true).build(no);
+        }
+      }
+      else {
+        // limit the number of full resolution spools waiting for the writer
+        int window = 2 * threads;
+        int submitted = 0;
+        for (int no=0; no<imageCount; no++) {
+          while (submitted < imageCount && pending.size() < window) {
+            final int image = submitted++;
+            pending.add(pool.submit(() -> buildOnWorker(series, image)));
+          }
+          spools[no] = waitFor(pending.poll());
+          writeSpooled(no, 0, spools[no]);
+        }
+      }
+
+      for (int i=1; i<resolutions; i++) {
+        writer.setResolution(i);
+        for (int no=0; no<imageCount; no++) {
+          writeSpooled(no, i, spools[no]);
+        }
+      }
+      writer.setResolution(0);
+      for (int no=0; no<imageCount; no++) {
+        metrics.countPlane();
+      }
+    }
+    finally {
+      for (Future<File[]> future : pending) {
+        future.cancel(true);
+      }
+      for (File[] files : spools) {
+        deleteSpools(files);
+      }
+    }
+  }
+
+  /** Builds the pyramid for one plane using one of the worker readers. */
+  private File[] buildOnWorker(int series, int no)
+    throws FormatException, IOException, InterruptedException
+  {
+    IFormatReader workerReader = workerReaders.take();
+    try {
+      workerReader.setSeries(series);
+      return new PyramidBuilder(workerReader, false).build(no);
+    }
+    finally {
+      workerReaders.add(workerReader);
+    }
+  }
+
+  /**
+   * Writes a spooled resolution of a plane in the current series, then
+   * deletes its spool file.
+   */
+  private void writeSpooled(int no, int resolution, File[] spools)
+    throws FormatException, IOException
+  {
+    File spoolFile = spools[resolution];
+    if (spoolFile == null) {
+      return;
+    }
+    int width = getResolutionSize(reader.getSizeX(), resolution);
+    int height = getResolutionSize(reader.getSizeY(), resolution);
+    int rowBytes = FormatTools.getPlaneSize(reader, width, 1);
+    try (DataInputStream spool = new DataInputStream(
+      new BufferedInputStream(new FileInputStream(spoolFile))))
+    {
+      for (int y=0; y<height; y+=stripHeight) {
+        int rows = Math.min(stripHeight, height - y);
+        byte[] strip = buffers.get(rows * rowBytes);
+        spool.readFully(strip);
+        writer.saveBytes(no, strip, 0, y, width, rows);
+      }
+    }
+    spoolFile.delete();
+    spools[resolution] = null;
+  }
+
+  private int getResolutionSize(int size, int resolution) {
+    for (int i=0; i<resolution; i++) {
+      size /= scale;
+    }
+    return size;
+  }
+
+  private static void deleteSpools(File[] spools) {
+    if (spools == null) {
+      return;
+    }
+    for (File spoolFile : spools) {
+      if (spoolFile != null) {
+        spoolFile.delete();
+      }
+    }
+  }
+
+  /**
+   * Wait for a plane's pyramid, rethrowing any exception from the worker.
+   *
+   * @param future the pending pyramid
+   * @return the spool files for each resolution
+   */
+  private static File[] waitFor(Future<File[]> future)
+    throws FormatException, IOException
+  {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while building pyramid");
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof FormatException) {
+        throw (FormatException) cause;
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new FormatException(cause);
+    }
+  }
+
+  /**
+   * Wait for every task of a shut down pool to finish, so that no task is
+   * still using a reader when it is closed.  Interrupts are deferred until
+   * the pool has terminated.
+   */
+  private static void awaitTermination(ForkJoinPool pool) {
+    boolean interrupted = false;
+    while (!pool.isTerminated()) {
+      try {
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      }
+      catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Close the file reader, writer and any worker readers. */
+  private void cleanup() {
+    try {
+      writer.close();
+    }
+    catch (IOException e) {
+      System.err.println("Failed to close writer.");
+      e.printStackTrace();
+    }
+    try {
+      reader.close();
+    }
+    catch (IOException e) {
+      System.err.println("Failed to close reader.");
+      e.printStackTrace();
+    }
+    if (workerReaders != null) {
+      for (IFormatReader workerReader : workerReaders) {
+        try {
+          workerReader.close();
+        }
+        catch (IOException e) {
+          System.err.println("Failed to close worker reader.");
+          e.printStackTrace();
+        }
+      }
+      workerReaders = null;
+    }
+  }
+
+  /**
+   * Builds the pyramid for a single plane.  Level 0 is either written
+   * directly, which is only safe from the writing thread, or spooled along
+   * with the sub-resolutions.
+   */
+  private class PyramidBuilder {
+    private final IFormatReader source;
+    private final boolean writeBase;
+    private final IImageScaler scaler = new SimpleImageScaler();
+    private final TileBufferPool stripBuffers = new TileBufferPool();
+    private final Level[] levels = new Level[resolutions];
+
+    PyramidBuilder(IFormatReader source, boolean writeBase) {
+      this.source = source;
+      this.writeBase = writeBase;
+      int bpp = FormatTools.getBytesPerPixel(source.getPixelType());
+      int channels = source.getRGBChannelCount();
+      boolean interleaved = source.isInterleaved();
+      int width = source.getSizeX();
+      int height = source.getSizeY();
+      for (int i=0; i<resolutions; i++) {
+        levels[i] = new Level(width, height, stripHeight, bpp, channels,
+          interleaved);
+        width /= scale;
+        height /= scale;
+      }
+    }
+
+    /** Returns the spool file for each level; null if not spooled. */
+    File[] build(int no) throws FormatException, IOException {
+      File[] spools = new File[resolutions];
+      try {
+        Level base = levels[0];
+        for (int y=0; y<base.height; y+=stripHeight) {
+          int rows = Math.min(stripHeight, base.height - y);
+          byte[] strip = stripBuffers.get(base.getStripSize(rows));
+          source.openBytes(no, strip, 0, y, base.width, rows);
+          if (writeBase) {
+            writer.saveBytes(no, strip, 0, y, base.width, rows);
+          }
+          else {
+            base.spool(strip, rows);
+          }
+          downsample(1, strip, base.width, rows);
+        }
+        // the last strip of each level may be partially filled
+        for (int i=1; i<resolutions; i++) {
+          if (levels[i].rows > 0) {
+            flush(i);
+          }
+        }
+        for (int i=0; i<resolutions; i++) {
+          levels[i].closeSpool();
+          spools[i] = levels[i].spoolFile;
+        }
+        return spools;
+      }
+      catch (IOException | FormatException | RuntimeException e) {
+        for (Level level : levels) {
+          level.deleteSpool();
+        }
+        throw e;
+      }
+    }
+
+    /**
+     * Downsamples a strip of the previous level and appends the result to
+     * the given level, flushing each time the level's strip fills up.
+     */
+    private void downsample(int index, byte[] strip, int width, int rows)
+      throws IOException
+    {
+      if (index >= resolutions) {
+        return;
+      }
+      Level level = levels[index];
+      int type = source.getPixelType();
+      byte[] scaled = scaler.downsample(strip, width, rows, scale,
+        FormatTools.getBytesPerPixel(type), source.isLittleEndian(),
+        FormatTools.isFloatingPoint(type), source.getRGBChannelCount(),
+        source.isInterleaved());
+      int scaledRows = rows / scale;
+      int copied = 0;
+      while (copied < scaledRows) {
+        copied += level.append(scaled, scaledRows, copied);
+        if (level.rows == stripHeight) {
+          flush(index);
+        }
+      }
+    }
+
+    /** Spools the level's current strip and cascades it to the next level. */
+    private void flush(int index) throws IOException {
+      Level level = levels[index];
+      byte[] strip = level.getStrip();
+      level.spool(strip, level.rows);
+      downsample(index + 1, strip, level.width, level.rows);
+      level.rows = 0;
+    }
+  }
+
+  /**
+   * One strip of a single resolution, plus the file that completed strips
+   * of that resolution are spooled to.  Strips use the same layout as
+   * openBytes, so a planar strip stores each channel's rows contiguously.
+   */
+  private static class Level {
+    final int width;
+    final int height;
+    final int capacity;
+    /** Number of separately stored channel blocks (1 if interleaved). */
+    final int blocks;
+    final int rowBytes;
+    private byte[] data;
+    int rows;
+
+    File spoolFile;
+    OutputStream spool;
+
+    Level(int width, int height, int capacity, int bpp, int channels,
+      boolean interleaved)
+    {
+      this.width = width;
+      this.height = height;
+      this.capacity = capacity;
+      this.blocks = interleaved ? 1 : channels;
+      this.rowBytes = width * bpp * (interleaved ? channels : 1);
+    }
+
+    int getStripSize(int stripRows) {
+      return stripRows * rowBytes * blocks;
+    }
+
+    /**
+     * Copies rows from a strip of 'srcRows' rows, starting at row 'from',
+     * until this strip is full.  Returns the number of rows copied.
+     */
+    int append(byte[] src, int srcRows, int from) {
+      if (data == null) {
+        data = new byte[getStripSize(capacity)];
+      }
+      int count = Math.min(capacity - rows, srcRows - from);
+      for (int b=0; b<blocks; b++) {
+        System.arraycopy(src, (b * srcRows + from) * rowBytes,
+          data, (b * capacity + rows) * rowBytes, count * rowBytes);
+      }
+      rows += count;
+      return count;
+    }
+
+    /** Returns the buffered rows as a contiguous strip. */
+    byte[] getStrip() {
+      if (rows == capacity || blocks == 1) {
+        return data;
+      }
+      byte[] strip = new byte[getStripSize(rows)];
+      for (int b=0; b<blocks; b++) {
+        System.arraycopy(data, b * capacity * rowBytes,
+          strip, b * rows * rowBytes, rows * rowBytes);
+      }
+      return strip;
+    }
+
+    void spool(byte[] strip, int stripRows) throws IOException {
+      if (spool == null) {
+        spoolFile = File.createTempFile("pyramid", ".raw");
+        spoolFile.deleteOnExit();
+        spool = new BufferedOutputStream(new FileOutputStream(spoolFile));
+      }
+      spool.write(strip, 0, getStripSize(stripRows));
+    }
+
+    void closeSpool() throws IOException {
+      if (spool != null) {
+        spool.close();
+        spool = null;
+      }
+    }
+
+    void deleteSpool() {
+      try {
+        closeSpool();
+      }
+      catch (IOException e) {
+        System.err.println("Failed to close spool file");
+        e.printStackTrace();
+      }
+      if (spoolFile != null) {
+        spoolFile.delete();
+        spoolFile = null;
+      }
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 4) {
+      System.out.println("GeneratePyramidResolutions input-file scale-factor resolution-count output-file [--tile-size 256] [--threads 1] [--metrics metrics.json]");
+      System.exit(1);
+    }
+    String in = args[0];
+    String out = args[3];
+    int scale = Integer.parseInt(args[1]);
+    int resolutions = Integer.parseInt(args[2]);
+    GeneratePyramidResolutions generator =
+      new GeneratePyramidResolutions(in, out, scale, resolutions);
+    String metricsFile = null;
+    for (int i=4; i<args.length; i++) {
+      if (args[i].equals("--tile-size")) {
+        generator.setTileSize(Integer.parseInt(args[++i]));
+      }
+      else if (args[i].equals("--threads")) {
+        generator.setThreads(Integer.parseInt(args[++i]));
+      }
+      else if (args[i].equals("--metrics")) {
+        metricsFile = args[++i];
+      }
+    }
+
+    generator.generate();
+    System.out.println(generator.buffers);
+
+    generator.getMetrics().report(metricsFile);
 
     System.out.println("Done.");
   }
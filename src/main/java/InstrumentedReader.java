@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.io.IOException;
+
+import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.ReaderWrapper;
+
+/**
+ * A reader that records the time spent in setId, openBytes and close in a
+ * {@link ConversionMetrics}, so that conversions can be timed without
+ * changing how they call the reader.
+ */
+public class InstrumentedReader extends ReaderWrapper {
+
+  private final ConversionMetrics metrics;
+
+  /**
+   * @param reader the reader to time
+   * @param metrics the metrics to record into
+   */
+  public InstrumentedReader(IFormatReader reader, ConversionMetrics metrics) {
+    super(reader);
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void setId(String id) throws FormatException, IOException {
+    long start = metrics.start();
+    reader.setId(id);
+    metrics.record(ConversionMetrics.Stage.SET_ID, start, 0);
+  }
+
+  @Override
+  public byte[] openBytes(int no) throws FormatException, IOException {
+    long start = metrics.start();
+    byte[] buf = reader.openBytes(no);
+    metrics.record(ConversionMetrics.Stage.DECODE, start, buf.length);
+    return buf;
+  }
+
+  @Override
+  public byte[] openBytes(int no, byte[] buf)
+    throws FormatException, IOException
+  {
+    long start = metrics.start();
+    reader.openBytes(no, buf);
+    metrics.record(ConversionMetrics.Stage.DECODE, start,
+      FormatTools.getPlaneSize(this));
+    return buf;
+  }
+
+  @Override
+  public byte[] openBytes(int no, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    long start = metrics.start();
+    byte[] buf = reader.openBytes(no, x, y, w, h);
+    metrics.record(ConversionMetrics.Stage.DECODE, start, buf.length);
+    return buf;
+  }
+
+  @Override
+  public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    long start = metrics.start();
+    reader.openBytes(no, buf, x, y, w, h);
+    metrics.record(ConversionMetrics.Stage.DECODE, start,
+      FormatTools.getPlaneSize(this, w, h));
+    return buf;
+  }
+
+  @Override
+  public void close() throws IOException {
+    long start = metrics.start();
+    reader.close();
+    metrics.record(ConversionMetrics.Stage.CLOSE, start, 0);
+  }
+
+}
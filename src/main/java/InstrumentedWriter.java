@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.io.IOException;
+
+import loci.formats.FormatException;
+import loci.formats.ICompressedTileWriter;
+import loci.formats.IFormatWriter;
+import loci.formats.ImageWriter;
+
+/**
+ * A writer that records the time spent in setId, saveBytes and close in a
+ * {@link ConversionMetrics}, so that conversions can be timed without
+ * changing how they call the writer.
+ *
+ * Bio-Formats has no writer counterpart to ReaderWrapper, so this extends
+ * ImageWriter, which already delegates every call to the writer for the
+ * output file's format. Tiles that were compressed ahead of time are passed
+ * on to that writer if it accepts them.
+ */
+public class InstrumentedWriter extends ImageWriter
+  implements ICompressedTileWriter
+{
+
+  private final ConversionMetrics metrics;
+
+  /** @param metrics the metrics to record into */
+  public InstrumentedWriter(ConversionMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void setId(String id) throws FormatException, IOException {
+    long start = metrics.start();
+    super.setId(id);
+    metrics.record(ConversionMetrics.Stage.SET_ID, start, 0);
+  }
+
+  @Override
+  public void saveBytes(int no, byte[] buf)
+    throws FormatException, IOException
+  {
+    long start = metrics.start();
+    super.saveBytes(no, buf);
+    metrics.record(ConversionMetrics.Stage.ENCODE, start, buf.length);
+  }
+
+  @Override
+  public void saveBytes(int no, byte[] buf, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    long start = metrics.start();
+    super.saveBytes(no, buf, x, y, w, h);
+    metrics.record(ConversionMetrics.Stage.ENCODE, start, buf.length);
+  }
+
+  /**
+   * @return true if the writer for the current file can write tiles that
+   *   are already compressed
+   */
+  public boolean canSaveCompressedBytes() {
+    return getWriter() instanceof ICompressedTileWriter;
+  }
+
+  @Override
+  public void saveCompressedBytes(int no, byte[] buf, int x, int y, int w,
+    int h) throws FormatException, IOException
+  {
+    IFormatWriter writer = getWriter();
+    if (!(writer instanceof ICompressedTileWriter)) {
+      throw new FormatException(
+        writer.getFormat() + " cannot write compressed tiles");
+    }
+    long start = metrics.start();
+    ((ICompressedTileWriter) writer).saveCompressedBytes(no, buf, x, y, w, h);
+    metrics.record(ConversionMetrics.Stage.ENCODE, start, buf.length);
+  }
+
+  @Override
+  public void close() throws IOException {
+    long start = metrics.start();
+    super.close();
+    metrics.record(ConversionMetrics.Stage.CLOSE, start, 0);
+  }
+
+}
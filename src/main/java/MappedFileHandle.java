@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only handle that maps a file into memory with
+ * {@link FileChannel#map}. Files larger than 2 GB are mapped as several
+ * segments, so the whole file is addressable without copying it onto the
+ * heap; reads are served from the page cache.
+ *
+ * The handle can be registered with {@link loci.common.Location#mapFile}
+ * in place of a {@link loci.common.ByteArrayHandle}.
+ */
+public class MappedFileHandle extends SegmentedHandle {
+
+  /** Default segment size; 1 GB keeps every segment within int range. */
+  public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+  /**
+   * Map the whole of the given file.
+   *
+   * @param file the file to map
+   * @throws IOException if the file cannot be opened or mapped
+   */
+  public MappedFileHandle(File file) throws IOException {
+    this(file, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * Map the whole of the given file in segments of the given size.
+   *
+   * @param file the file to map
+   * @param segmentSize the size of each mapping; a power of two
+   * @throws IOException if the file cannot be opened or mapped
+   */
+  public MappedFileHandle(File file, int segmentSize) throws IOException {
+    super(segmentSize);
+    // the mappings remain valid once the channel is closed
+    try (FileChannel channel =
+      FileChannel.open(file.toPath(), StandardOpenOption.READ))
+    {
+      long size = channel.size();
+      for (long pos=0; pos<size; pos+=segmentSize) {
+        long count = Math.min(segmentSize, size - pos);
+        addSegment(channel.map(FileChannel.MapMode.READ_ONLY, pos, count));
+      }
+      setLengthInternal(size);
+    }
+  }
+
+  @Override
+  protected boolean isReadOnly() {
+    return true;
+  }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicLong;
+
+import loci.common.Location;
+import loci.formats.FormatException;
+import loci.formats.IFormatReader;
+import loci.formats.ImageReader;
+import loci.formats.Memoizer;
+import loci.formats.meta.MetadataStore;
+
+/**
+ * Opens readers through a {@link Memoizer}, so that the parsed state of
+ * each file is saved to an on-disk cache directory and later opens of the
+ * same file skip metadata parsing.
+ *
+ * Memoizer already rejects a memo when the file itself has changed. On
+ * top of that, a memo is discarded and the file parsed again when any of
+ * the files it used, such as companion files, is newer than the memo.
+ *
+ * The time each file took to parse is stored next to its memo, so that
+ * the time saved by later hits can be reported.
+ */
+public class MetadataCache {
+
+  private final File directory;
+  private final long minimumElapsed;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+  private final AtomicLong savedNanos = new AtomicLong();
+
+  /**
+   * Cache files which take longer than the Memoizer default to parse.
+   *
+   * @param directory the directory in which memo files are stored
+   */
+  public MetadataCache(File directory) {
+    this(directory, Memoizer.DEFAULT_MINIMUM_ELAPSED);
+  }
+
+  /**
+   * @param directory the directory in which memo files are stored
+   * @param minimumElapsed the number of milliseconds a file must take to
+   *   parse before it is cached
+   */
+  public MetadataCache(File directory, long minimumElapsed) {
+    this.directory = directory;
+    this.minimumElapsed = minimumElapsed;
+  }
+
+  /**
+   * Open the given file, loading its parsed state from the cache if there
+   * is a valid memo and saving it otherwise.
+   *
+   * @param id the file to open
+   * @param store the metadata store to populate, or null for the default
+   * @return a reader on which setId has been called
+   * @throws FormatException if the file cannot be parsed
+   * @throws IOException if the file cannot be read
+   */
+  public IFormatReader open(String id, MetadataStore store)
+    throws FormatException, IOException
+  {
+    return open(new ImageReader(), id, store);
+  }
+
+  /**
+   * Open the given file with the given reader, loading its parsed state
+   * from the cache if there is a valid memo and saving it otherwise.
+   *
+   * @param reader the uninitialized reader to wrap
+   * @param id the file to open
+   * @param store the metadata store to populate, or null for the default
+   * @return a reader on which setId has been called
+   * @throws FormatException if the file cannot be parsed
+   * @throws IOException if the file cannot be read
+   */
+  public IFormatReader open(IFormatReader reader, String id,
+    MetadataStore store) throws FormatException, IOException
+  {
+    Memoizer memoizer = new Memoizer(reader, minimumElapsed, directory);
+    if (store != null) {
+      memoizer.setMetadataStore(store);
+    }
+    long start = System.nanoTime();
+    memoizer.setId(id);
+    long elapsed = System.nanoTime() - start;
+
+    File memoFile = memoizer.getMemoFile(id);
+    if (memoizer.isLoadedFromMemo()) {
+      if (isStale(memoizer, memoFile)) {
+        invalidations.incrementAndGet();
+        memoizer.close();
+        memoFile.delete();
+        getTimingFile(memoFile).delete();
+        if (store != null) {
+          store.createRoot();
+        }
+        return open(reader, id, store);
+      }
+      hits.incrementAndGet();
+      long parseTime = readParseTime(memoFile);
+      if (parseTime > elapsed) {
+        savedNanos.addAndGet(parseTime - elapsed);
+      }
+    }
+    else {
+      misses.incrementAndGet();
+      if (memoizer.isSavedToMemo() && memoFile != null) {
+        writeParseTime(memoFile, elapsed);
+      }
+    }
+    return memoizer;
+  }
+
+  /** @return the number of files whose parsed state was loaded */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /** @return the number of files that had to be parsed */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /** @return the number of memos discarded because a used file changed */
+  public long getInvalidationCount() {
+    return invalidations.get();
+  }
+
+  /** @return the parse time saved by loading memos, in milliseconds */
+  public long getSavedMillis() {
+    return savedNanos.get() / 1000000;
+  }
+
+  @Override
+  public String toString() {
+    return "Metadata cache: " + hits + " hits, " + misses + " misses, " +
+      invalidations + " invalidated, " + getSavedMillis() + " ms parse time saved";
+  }
+
+  /** @return true if any file used by the reader is newer than the memo */
+  private static boolean isStale(IFormatReader reader, File memoFile) {
+    long memoTime = memoFile.lastModified();
+    for (String file : reader.getUsedFiles()) {
+      if (new Location(file).lastModified() > memoTime) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static File getTimingFile(File memoFile) {
+    return new File(memoFile.getPath() + ".parse");
+  }
+
+  private static long readParseTime(File memoFile) {
+    File timing = getTimingFile(memoFile);
+    try {
+      byte[] text = Files.readAllBytes(timing.toPath());
+      return Long.parseLong(new String(text, StandardCharsets.UTF_8).trim());
+    }
+    catch (IOException | NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static void writeParseTime(File memoFile, long nanos) {
+    File timing = getTimingFile(memoFile);
+    try {
+      Files.write(timing.toPath(),
+        Long.toString(nanos).getBytes(StandardCharsets.UTF_8));
+    }
+    catch (IOException e) {
+      System.err.println("Failed to record parse time in " + timing);
+      e.printStackTrace();
+    }
+  }
+
+}
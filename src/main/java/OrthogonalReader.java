@@ -30,13 +30,34 @@
  * #L%
  */
 
-import java.nio.ByteBuffer;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ch.qos.logback.classic.Level;
 import loci.common.services.ServiceFactory;
+import loci.formats.FormatException;
 import loci.formats.FormatTools;
 import loci.formats.ImageReader;
 import loci.formats.MetadataTools;
@@ -51,12 +72,28 @@ public class OrthogonalReader {
     private static final Logger log =
             LoggerFactory.getLogger(OrthogonalReader.class);
 
+    /** Dimension order of the output; volumes are contiguous runs of Z. */
+    private static final String OUTPUT_ORDER = "XYZCT";
+
     private String input;
 
     private String output;
 
     private boolean debug;
 
+    /** Default number of bytes for slabs and YZ data held in memory. */
+    public static final long DEFAULT_MEMORY_BUDGET = 256L * 1024 * 1024;
+
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+
+    private int threads = 1;
+
+    /** Readers used by the worker threads, one per thread. */
+    private BlockingQueue<ImageReader> workerReaders;
+
+    /** Slab and plane buffers used by the worker threads, one per thread. */
+    private BlockingQueue<TileBufferPool> workerBuffers;
+
     
   /**
    * Launches the Orthogonal reader.
@@ -77,6 +114,12 @@ public class OrthogonalReader {
           else if (args[i].equals("--debug")) {
             main.setDebug(true);
           }
+          else if (args[i].equals("--memory-budget")) {
+            main.setMemoryBudget(Long.parseLong(args[i + 1]));
+          }
+          else if (args[i].equals("--threads")) {
+            main.setThreads(Integer.parseInt(args[i + 1]));
+          }
         }
         main.readOrthogonalPlanes();
     }
@@ -93,6 +136,32 @@ public class OrthogonalReader {
       this.debug = debug;
     }
 
+    /**
+     * Sets the number of bytes that may be used for slabs of Z planes and
+     * for YZ data held in memory.
+     *
+     * @param memoryBudget the budget in bytes; must be positive
+     */
+    public void setMemoryBudget(long memoryBudget) {
+      if (memoryBudget <= 0) {
+        throw new IllegalArgumentException("Memory budget must be positive");
+      }
+      this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Sets the number of (c, t) volumes to reslice concurrently.  The
+     * memory budget is shared equally between them.
+     *
+     * @param threads the number of worker threads; must be positive
+     */
+    public void setThreads(int threads) {
+      if (threads < 1) {
+        throw new IllegalArgumentException("Thread count must be positive");
+      }
+      this.threads = threads;
+    }
+
     private ImageReader initialiseReader(String fileName) throws Exception {
         ImageReader reader = new ImageReader();
         reader.setId(fileName);
@@ -106,30 +175,39 @@ public class OrthogonalReader {
         OMEXMLService service = factory.getInstance(OMEXMLService.class);
         IMetadata metadata = service.createOMEXMLMetadata();
         MetadataRetrieve mr = (MetadataRetrieve) reader.getMetadataStore();
-        Length originalSizeX = mr.getPixelsPhysicalSizeX(0);
-        Length originalSizeY = mr.getPixelsPhysicalSizeY(0);
-        Length originalSizeZ = mr.getPixelsPhysicalSizeZ(0);
-        // Original XY planes
-        // XZ planes
-        MetadataTools.populateMetadata(
-            metadata, 0, "XZ", reader.isLittleEndian(),
-            reader.getDimensionOrder(),
-            FormatTools.getPixelTypeString(reader.getPixelType()),
-            reader.getSizeX(), reader.getSizeZ(),
-            reader.getSizeY(), 1, 1, 1);
-        metadata.setPixelsPhysicalSizeX(originalSizeX, 0);
-        metadata.setPixelsPhysicalSizeY(originalSizeZ, 0);
-        metadata.setPixelsPhysicalSizeZ(originalSizeY, 0);
-        // YZ planes
-        MetadataTools.populateMetadata(
-            metadata, 1, "YZ", reader.isLittleEndian(),
-            reader.getDimensionOrder(),
-            FormatTools.getPixelTypeString(reader.getPixelType()),
-            reader.getSizeY(), reader.getSizeZ(),
-            reader.getSizeX(), 1, 1, 1);
-        metadata.setPixelsPhysicalSizeX(originalSizeY, 1);
-        metadata.setPixelsPhysicalSizeY(originalSizeZ, 1);
-        metadata.setPixelsPhysicalSizeZ(originalSizeX, 1);
+        for (int s = 0; s < reader.getSeriesCount(); s++) {
+            reader.setSeries(s);
+            Length originalSizeX = mr.getPixelsPhysicalSizeX(s);
+            Length originalSizeY = mr.getPixelsPhysicalSizeY(s);
+            Length originalSizeZ = mr.getPixelsPhysicalSizeZ(s);
+            String suffix = s == 0 ? "" : " " + s;
+            // Original XY planes
+            // XZ planes
+            int xzSeries = 2 * s;
+            MetadataTools.populateMetadata(
+                metadata, xzSeries, "XZ" + suffix, reader.isLittleEndian(),
+                OUTPUT_ORDER,
+                FormatTools.getPixelTypeString(reader.getPixelType()),
+                reader.getSizeX(), reader.getSizeZ(),
+                reader.getSizeY(), reader.getEffectiveSizeC(),
+                reader.getSizeT(), 1);
+            metadata.setPixelsPhysicalSizeX(originalSizeX, xzSeries);
+            metadata.setPixelsPhysicalSizeY(originalSizeZ, xzSeries);
+            metadata.setPixelsPhysicalSizeZ(originalSizeY, xzSeries);
+            // YZ planes
+            int yzSeries = 2 * s + 1;
+            MetadataTools.populateMetadata(
+                metadata, yzSeries, "YZ" + suffix, reader.isLittleEndian(),
+                OUTPUT_ORDER,
+                FormatTools.getPixelTypeString(reader.getPixelType()),
+                reader.getSizeY(), reader.getSizeZ(),
+                reader.getSizeX(), reader.getEffectiveSizeC(),
+                reader.getSizeT(), 1);
+            metadata.setPixelsPhysicalSizeX(originalSizeY, yzSeries);
+            metadata.setPixelsPhysicalSizeY(originalSizeZ, yzSeries);
+            metadata.setPixelsPhysicalSizeZ(originalSizeX, yzSeries);
+        }
+        reader.setSeries(0);
         OMETiffWriter writer = new OMETiffWriter();
         writer.setMetadataRetrieve(metadata);
         writer.setId(fileName);
@@ -147,40 +225,458 @@ public class OrthogonalReader {
             root.setLevel(Level.INFO);
         }
         ImageReader reader = this.initialiseReader(this.input);
-        reader.setSeries(0);
         OMETiffWriter writer = this.initialiseWriter(this.output, reader);
-        int index;
-        // Write XZ planes
-        writer.setSeries(0);
-        for (int y = 0; y < reader.getSizeY(); y++) {
-            ByteBuffer bufferXZ = ByteBuffer.allocate(
-                (int) (0.125 * reader.getBitsPerPixel()) * reader.getSizeX()
-                * reader.getSizeZ());
-            for (int z = 0; z < reader.getSizeZ(); z++) {
-                index = reader.getIndex(z, 0, 0);
-                byte[] line = reader.openBytes(
-                    index, 0, y, reader.getSizeX(), 1);
-                bufferXZ.put(line);
-            }
-            log.debug("y: {}, {}", y, bufferXZ.array().length);
-            writer.saveBytes(y, bufferXZ.array());
-        }
-        // Write YZ planes
-        writer.setSeries(1);
-        for (int x = 0; x < reader.getSizeX(); x++) {
-            ByteBuffer bufferYZ = ByteBuffer.allocate(
-                (int) (0.125 * reader.getBitsPerPixel()) * reader.getSizeY()
-                * reader.getSizeZ());
-            for (int z = 0; z < reader.getSizeZ(); z++) {
-                index = reader.getIndex(z, 0, 0);
-                byte[] line = reader.openBytes(
-                    index, x, 0, 1, reader.getSizeY());
-                bufferYZ.put(line);
-            }
-            log.debug("x: {}, {}", x, bufferYZ.array().length);
-            writer.saveBytes(x, bufferYZ.array());
-        }
-        reader.close();
-        writer.close();
+        ExecutorService executor = null;
+        try {
+            if (threads > 1) {
+                workerReaders = new ArrayBlockingQueue<ImageReader>(threads);
+                workerBuffers = new ArrayBlockingQueue<TileBufferPool>(threads);
+                for (int i = 0; i < threads; i++) {
+                    workerReaders.add(initialiseReader(this.input));
+                    workerBuffers.add(new TileBufferPool());
+                }
+                executor = Executors.newFixedThreadPool(threads);
+            }
+            TileBufferPool buffers = new TileBufferPool();
+            for (int s = 0; s < reader.getSeriesCount(); s++) {
+                reader.setSeries(s);
+                if (executor == null) {
+                    resliceSeries(reader, writer, s, buffers);
+                }
+                else {
+                    resliceSeriesParallel(reader, writer, s, executor);
+                }
+            }
+        }
+        finally {
+            if (executor != null) {
+                // cancelling does not stop a running openBytes, so wait for
+                // the workers to give their readers back before closing them
+                executor.shutdownNow();
+                awaitTermination(executor);
+            }
+            reader.close();
+            writer.close();
+            if (workerReaders != null) {
+                for (ImageReader workerReader : workerReaders) {
+                    workerReader.close();
+                }
+                workerReaders = null;
+                workerBuffers = null;
+            }
+        }
+    }
+
+    /**
+     * Reslices every (c, t) volume of a series on the calling thread.  XZ
+     * planes are written as they are produced; YZ planes are spooled until
+     * all of the series' XZ planes have been written, unless there is only
+     * one volume.
+     */
+    private void resliceSeries(ImageReader reader, OMETiffWriter writer,
+        int series, TileBufferPool buffers)
+        throws FormatException, IOException
+    {
+        int sizeC = reader.getEffectiveSizeC();
+        int volumes = sizeC * reader.getSizeT();
+        int sizeX = reader.getSizeX();
+        int sizeY = reader.getSizeY();
+        List<PlaneSpool> yzSpools = new ArrayList<PlaneSpool>();
+        try {
+            for (int v = 0; v < volumes; v++) {
+                PlaneSink xz = writerSink(writer, 2 * series, v * sizeY);
+                PlaneSink yz;
+                if (volumes == 1) {
+                    yz = writerSink(writer, 2 * series + 1, 0);
+                }
+                else {
+                    PlaneSpool spool = new PlaneSpool();
+                    yzSpools.add(spool);
+                    yz = spool;
+                }
+                resliceVolume(reader, v % sizeC, v / sizeC, memoryBudget,
+                    buffers, xz, yz);
+            }
+            int planeBytes = sizeY * reader.getSizeZ() *
+                FormatTools.getBytesPerPixel(reader.getPixelType());
+            for (int v = 0; v < yzSpools.size(); v++) {
+                yzSpools.get(v).copyTo(writer, 2 * series + 1, v * sizeX,
+                    sizeX, planeBytes);
+            }
+        }
+        finally {
+            for (PlaneSpool spool : yzSpools) {
+                spool.delete();
+            }
+        }
+    }
+
+    /**
+     * Reslices the (c, t) volumes of a series concurrently, each on its own
+     * worker reader and with an equal share of the memory budget.  Both
+     * outputs of every volume are spooled and then committed from the
+     * calling thread in plane order.  At most two volumes per thread are
+     * resliced ahead of the writer, so XZ spools do not pile up behind it.
+     */
+    private void resliceSeriesParallel(ImageReader reader,
+        OMETiffWriter writer, int series, ExecutorService executor)
+        throws FormatException, IOException
+    {
+        int sizeC = reader.getEffectiveSizeC();
+        int volumes = sizeC * reader.getSizeT();
+        int sizeX = reader.getSizeX();
+        int sizeY = reader.getSizeY();
+        int bpp = FormatTools.getBytesPerPixel(reader.getPixelType());
+        long budget = memoryBudget / threads;
+        Deque<Future<PlaneSpool[]>> pending =
+            new ArrayDeque<Future<PlaneSpool[]>>();
+        List<PlaneSpool[]> done = new ArrayList<PlaneSpool[]>();
+        try {
+            int window = 2 * threads;
+            int submitted = 0;
+            int xzBytes = sizeX * reader.getSizeZ() * bpp;
+            for (int v = 0; v < volumes; v++) {
+                while (submitted < volumes && pending.size() < window) {
+                    final int c = submitted % sizeC;
+                    final int t = submitted / sizeC;
+                    pending.add(executor.submit(
+                        () -> resliceOnWorker(series, c, t, budget)));
+                    submitted++;
+                }
+                PlaneSpool[] spools = waitFor(pending.poll());
+                done.add(spools);
+                spools[0].copyTo(writer, 2 * series, v * sizeY, sizeY, xzBytes);
+                spools[0].delete();
+            }
+            int yzBytes = sizeY * reader.getSizeZ() * bpp;
+            for (int v = 0; v < volumes; v++) {
+                PlaneSpool yz = done.get(v)[1];
+                yz.copyTo(writer, 2 * series + 1, v * sizeX, sizeX, yzBytes);
+                yz.delete();
+            }
+        }
+        finally {
+            for (Future<PlaneSpool[]> future : pending) {
+                future.cancel(true);
+            }
+            for (PlaneSpool[] spools : done) {
+                spools[0].delete();
+                spools[1].delete();
+            }
+        }
+    }
+
+    /** Reslices one volume into a pair of spools using a worker reader. */
+    private PlaneSpool[] resliceOnWorker(int series, int c, int t,
+        long budget) throws FormatException, IOException, InterruptedException
+    {
+        ImageReader workerReader = workerReaders.take();
+        TileBufferPool buffers = workerBuffers.take();
+        PlaneSpool xz = new PlaneSpool();
+        PlaneSpool yz = new PlaneSpool();
+        try {
+            workerReader.setSeries(series);
+            resliceVolume(workerReader, c, t, budget, buffers, xz, yz);
+            xz.close();
+            yz.close();
+            return new PlaneSpool[] {xz, yz};
+        }
+        catch (IOException | FormatException | RuntimeException e) {
+            xz.delete();
+            yz.delete();
+            throw e;
+        }
+        finally {
+            workerBuffers.add(buffers);
+            workerReaders.add(workerReader);
+        }
+    }
+
+    /**
+     * Wait for a resliced volume, rethrowing any exception from the worker.
+     *
+     * @param future the pending volume
+     * @return the XZ and YZ spools for the volume
+     */
+    private static PlaneSpool[] waitFor(Future<PlaneSpool[]> future)
+        throws FormatException, IOException
+    {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reslicing");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof FormatException) {
+                throw (FormatException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new FormatException(cause);
+        }
+    }
+
+    /**
+     * Waits for every task of a shut down executor to finish.  Interrupts
+     * are deferred until the executor has terminated.
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static PlaneSink writerSink(OMETiffWriter writer, int series,
+        int offset)
+    {
+        return (plane, buf) -> {
+            writer.setSeries(series);
+            writer.saveBytes(offset + plane, buf);
+        };
+    }
+
+    /**
+     * Reslices one (c, t) volume of the current series in a single pass.
+     *
+     * Each Z plane is decoded exactly once, a slab of rows at a time.  The
+     * slab holds every XZ plane for its rows, so those are emitted straight
+     * away.  For YZ output the slab is transposed into a block laid out as
+     * [x][z][row]; blocks are kept in memory when the volume fits in half
+     * of the memory budget and spilled to a temporary file otherwise.  Once
+     * every slab has been read, each YZ plane is assembled from its run in
+     * every block.
+     *
+     * @param reader the reader, set to the series being resliced
+     * @param c the channel to reslice
+     * @param t the timepoint to reslice
+     * @param budget the number of bytes this volume may hold in memory
+     * @param pool the buffers to reuse for slabs and planes
+     * @param xzSink receives the XZ planes, indexed by y
+     * @param yzSink receives the YZ planes, indexed by x
+     */
+    private static void resliceVolume(ImageReader reader, int c, int t,
+        long budget, TileBufferPool pool, PlaneSink xzSink, PlaneSink yzSink)
+        throws FormatException, IOException
+    {
+        int sizeX = reader.getSizeX();
+        int sizeY = reader.getSizeY();
+        int sizeZ = reader.getSizeZ();
+        int bpp = FormatTools.getBytesPerPixel(reader.getPixelType());
+        int rowBytes = sizeX * bpp;
+        long volumeBytes = (long) rowBytes * sizeY * sizeZ;
+        boolean spill = volumeBytes > budget / 2;
+        int slabRows = getSlabRows(reader, budget / 2);
+        log.info("Reslicing c={}, t={}, {} rows at a time, YZ data {}",
+            c, t, slabRows, spill ? "spilled to disk" : "held in memory");
+
+        byte[][] slab = new byte[sizeZ][];
+        byte[] xz = pool.acquire(rowBytes * sizeZ);
+        byte[] yz = pool.acquire(sizeY * sizeZ * bpp);
+        byte[] block = null;
+        byte[] column = null;
+        List<byte[]> blocks = new ArrayList<byte[]>();
+        File spillFile = null;
+        RandomAccessFile spillData = null;
+        try {
+            if (spill) {
+                spillFile = File.createTempFile("orthogonal", ".raw");
+                spillFile.deleteOnExit();
+                spillData = new RandomAccessFile(spillFile, "rw");
+            }
+
+            // Read slabs and emit XZ planes
+            for (int y0 = 0; y0 < sizeY; y0 += slabRows) {
+                int rows = Math.min(slabRows, sizeY - y0);
+                int slabBytes = rows * rowBytes;
+                for (int z = 0; z < sizeZ; z++) {
+                    if (slab[z] != null && slab[z].length != slabBytes) {
+                        pool.release(slab[z]);
+                        slab[z] = null;
+                    }
+                    if (slab[z] == null) {
+                        slab[z] = pool.acquire(slabBytes);
+                    }
+                    reader.openBytes(reader.getIndex(z, c, t), slab[z],
+                        0, y0, sizeX, rows);
+                }
+                for (int row = 0; row < rows; row++) {
+                    for (int z = 0; z < sizeZ; z++) {
+                        System.arraycopy(slab[z], row * rowBytes,
+                            xz, z * rowBytes, rowBytes);
+                    }
+                    log.debug("y: {}, {}", y0 + row, xz.length);
+                    xzSink.write(y0 + row, xz);
+                }
+
+                if (block != null && block.length != slabBytes * sizeZ) {
+                    pool.release(block);
+                    block = null;
+                }
+                if (block == null) {
+                    block = pool.acquire(slabBytes * sizeZ);
+                }
+                // block layout is [x][z][row]
+                for (int z = 0; z < sizeZ; z++) {
+                    TransposeKernels.transpose(slab[z], 0, rows, sizeX,
+                        block, z * rows * bpp, sizeZ * rows, bpp);
+                }
+                if (spill) {
+                    spillData.write(block);
+                }
+                else {
+                    blocks.add(block);
+                    block = null;
+                }
+            }
+
+            // Assemble and emit YZ planes
+            if (spill) {
+                column = pool.acquire(slabRows * bpp * sizeZ);
+            }
+            for (int x = 0; x < sizeX; x++) {
+                int b = 0;
+                long blockOffset = 0;
+                for (int y0 = 0; y0 < sizeY; y0 += slabRows, b++) {
+                    int rows = Math.min(slabRows, sizeY - y0);
+                    int runBytes = rows * bpp;
+                    int columnBytes = runBytes * sizeZ;
+                    byte[] src;
+                    int srcOffset;
+                    if (spill) {
+                        src = column;
+                        srcOffset = 0;
+                        spillData.seek(blockOffset + (long) x * columnBytes);
+                        spillData.readFully(column, 0, columnBytes);
+                        blockOffset += (long) columnBytes * sizeX;
+                    }
+                    else {
+                        src = blocks.get(b);
+                        srcOffset = x * columnBytes;
+                    }
+                    for (int z = 0; z < sizeZ; z++) {
+                        System.arraycopy(src, srcOffset + z * runBytes,
+                            yz, (z * sizeY + y0) * bpp, runBytes);
+                    }
+                }
+                log.debug("x: {}, {}", x, yz.length);
+                yzSink.write(x, yz);
+            }
+        }
+        finally {
+            if (spillData != null) {
+                spillData.close();
+            }
+            if (spillFile != null) {
+                spillFile.delete();
+            }
+            for (byte[] buf : slab) {
+                if (buf != null) {
+                    pool.release(buf);
+                }
+            }
+            for (byte[] buf : blocks) {
+                pool.release(buf);
+            }
+            if (block != null) {
+                pool.release(block);
+            }
+            if (column != null) {
+                pool.release(column);
+            }
+            pool.release(xz);
+            pool.release(yz);
+        }
+    }
+
+    /**
+     * Returns how many rows of every Z plane fit in the given budget,
+     * allowing for the transposed copy of the slab.  Where possible the
+     * slab is a whole number of the reader's optimal tile rows, so no tile
+     * is decoded twice.
+     */
+    private static int getSlabRows(ImageReader reader, long budget) {
+        long rowBytes = (long) reader.getSizeX() * reader.getSizeZ() *
+            FormatTools.getBytesPerPixel(reader.getPixelType());
+        long rows = budget / (2 * rowBytes);
+        rows = Math.max(1, Math.min(rows, reader.getSizeY()));
+        int tileRows = reader.getOptimalTileHeight();
+        if (tileRows > 0 && rows > tileRows) {
+            rows -= rows % tileRows;
+        }
+        return (int) rows;
+    }
+
+    /** Receives the resliced planes of one volume. */
+    private interface PlaneSink {
+        void write(int plane, byte[] buf) throws FormatException, IOException;
+    }
+
+    /**
+     * Collects planes of equal size in a temporary file, in the order they
+     * are written, so they can be committed once earlier planes are done.
+     */
+    private static class PlaneSpool implements PlaneSink {
+        private File file;
+        private OutputStream out;
+
+        @Override
+        public void write(int plane, byte[] buf) throws IOException {
+            if (out == null) {
+                file = File.createTempFile("orthogonal", ".planes");
+                file.deleteOnExit();
+                out = new BufferedOutputStream(new FileOutputStream(file));
+            }
+            out.write(buf);
+        }
+
+        void close() throws IOException {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+        }
+
+        /** Writes the spooled planes to 'count' consecutive plane indexes. */
+        void copyTo(OMETiffWriter writer, int series, int offset, int count,
+            int planeBytes) throws FormatException, IOException
+        {
+            close();
+            writer.setSeries(series);
+            byte[] buf = new byte[planeBytes];
+            try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file))))
+            {
+                for (int plane = 0; plane < count; plane++) {
+                    in.readFully(buf);
+                    writer.saveBytes(offset + plane, buf);
+                }
+            }
+        }
+
+        void delete() {
+            try {
+                close();
+            }
+            catch (IOException e) {
+                log.warn("Failed to close spool file", e);
+            }
+            if (file != null) {
+                file.delete();
+                file = null;
+            }
+        }
     }
 }
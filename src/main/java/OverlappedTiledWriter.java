@@ -35,10 +35,11 @@ import loci.common.services.DependencyException;
 import loci.common.services.ServiceException;
 import loci.common.services.ServiceFactory;
 import loci.formats.FormatException;
+import loci.formats.IFormatReader;
+import loci.formats.IFormatWriter;
 import loci.formats.ImageReader;
 import loci.formats.FormatTools;
 import loci.formats.meta.IMetadata;
-import loci.formats.out.OMETiffWriter;
 import loci.formats.services.OMEXMLService;
 
 /**
@@ -49,10 +50,10 @@ import loci.formats.services.OMEXMLService;
 public class OverlappedTiledWriter {
 
   /** The file format reader. */
-  private ImageReader reader;
+  private IFormatReader reader;
 
-  /** The file format writer. */
-  private OMETiffWriter writer;
+  /** The file format writer, chosen from the output file suffix. */
+  private IFormatWriter writer;
 
   /** The file to be read. */
   private String inputFile;
@@ -66,6 +67,18 @@ public class OverlappedTiledWriter {
   /** The tile height to be used. */
   private int tileSizeY;
 
+  /** Timings of the reader and writer calls. */
+  private final ConversionMetrics metrics = new ConversionMetrics();
+
+  /** The file to which a JSON summary of the timings is written, or null. */
+  private String metricsFile;
+
+  /** Tile buffers reused across tiles rather than allocating one per tile. */
+  private final TileBufferPool buffers = new TileBufferPool();
+
+  /** Allocations made while converting tiles. */
+  private AllocationCounter allocations;
+
   /**
    * Construct a new OverlappedTiledWriter to read the specified input file 
    * and write the given output file using the tile sizes provided.
@@ -82,6 +95,16 @@ public class OverlappedTiledWriter {
     this.tileSizeY = tileSizeY;
   }
 
+  /**
+   * Write a JSON summary of the time spent initializing, decoding, encoding
+   * and closing once the tiles have been written.
+   *
+   * @param metricsFile the JSON file to write
+   */
+  public void setMetricsFile(String metricsFile) {
+    this.metricsFile = metricsFile;
+  }
+
   /**
    * Set up the file reader and writer, ensuring that the input file is
    * associated with the reader and the output file is associated with the
@@ -101,19 +124,21 @@ public class OverlappedTiledWriter {
     IMetadata omexml = service.createOMEXMLMetadata();
 
     // set up the reader and associate it with the input file
-    reader = new ImageReader();
+    reader = new InstrumentedReader(new ImageReader(), metrics);
     reader.setMetadataStore(omexml);
     reader.setId(inputFile);
 
     // set up the writer and associate it with the output file
-    writer = new OMETiffWriter();
-    writer.setMetadataRetrieve(omexml);
-    writer.setInterleaved(reader.isInterleaved());
+    InstrumentedWriter imageWriter = new InstrumentedWriter(metrics);
+    imageWriter.setMetadataRetrieve(omexml);
+    imageWriter.setInterleaved(reader.isInterleaved());
 
     // set the tile size height and width for writing
-    this.tileSizeX = writer.setTileSizeX(tileSizeX);
-    this.tileSizeY = writer.setTileSizeY(tileSizeY);
+    IFormatWriter tiffWriter = imageWriter.getWriter(outputFile);
+    this.tileSizeX = tiffWriter.setTileSizeX(tileSizeX);
+    this.tileSizeY = tiffWriter.setTileSizeY(tileSizeY);
 
+    writer = imageWriter;
     writer.setId(outputFile);
   }
 
@@ -126,9 +151,7 @@ public class OverlappedTiledWriter {
    * @throws FormatException thrown by FormatWriter if attempting to set invalid series
    */
   public void readWriteTiles() throws FormatException, IOException {
-    int bpp = FormatTools.getBytesPerPixel(reader.getPixelType());
-    int tilePlaneSize = tileSizeX * tileSizeY * reader.getRGBChannelCount() * bpp;
-    byte[] buf = new byte[tilePlaneSize];
+    allocations = new AllocationCounter();
 
     for (int series=0; series<reader.getSeriesCount(); series++) {
       reader.setSeries(series);
@@ -158,11 +181,15 @@ public class OverlappedTiledWriter {
             int effTileSizeY = (tileY + tileSizeY) < height ? tileSizeY : height - tileY;
 
             // Read tiles from the input file and write them to the output OME-Tiff
-            buf = reader.openBytes(image, tileX, tileY, effTileSizeX, effTileSizeY);
+            // Partial tiles use their own correctly sized buffer from the pool
+            byte[] buf = buffers.get(
+              FormatTools.getPlaneSize(reader, effTileSizeX, effTileSizeY));
+            reader.openBytes(image, buf, tileX, tileY, effTileSizeX, effTileSizeY);
             writer.saveBytes(image, buf, tileX, tileY, effTileSizeX, effTileSizeY);
             /* overlapped-tiling-example-end */
           }
         }
+        metrics.countPlane();
       }
     }
   }
@@ -189,7 +216,11 @@ public class OverlappedTiledWriter {
    * To read an image file and write out an OME-Tiff tiled image on the command line:
    *
    * $ java OverlappedTiledWriter input-file.oib output-file.ome.tiff 256 256
-   * @param args Input file, Output file, tileSizeX and tileSizeY
+   *
+   * To also report where time is spent, with a JSON summary in metrics.json:
+   *
+   * $ java OverlappedTiledWriter input-file.oib output-file.ome.tiff 256 256 --metrics metrics.json
+   * @param args Input file, Output file, tileSizeX and tileSizeY, followed by optional flags
    * @throws IOException thrown if unable to setup input or output stream for reader or writer
    * @throws FormatException thrown when setting invalid values in reader or writer
    * @throws ServiceException thrown if unable to create OME-XML meta data
@@ -199,12 +230,19 @@ public class OverlappedTiledWriter {
     int tileSizeX = Integer.parseInt(args[2]);
     int tileSizeY = Integer.parseInt(args[3]);
     OverlappedTiledWriter overlappedTiledWriter = new OverlappedTiledWriter(args[0], args[1], tileSizeX, tileSizeY);
+    for (int i=4; i<args.length; i++) {
+      if (args[i].equals("--metrics")) {
+        overlappedTiledWriter.setMetricsFile(args[++i]);
+      }
+    }
     // initialize the files
     overlappedTiledWriter.initialize();
 
     try {
       // read and write the image using overlapped tiles
       overlappedTiledWriter.readWriteTiles();
+      System.out.println(overlappedTiledWriter.buffers + "; "
+        + overlappedTiledWriter.allocations);
     }
     catch(Exception e) {
       System.err.println("Failed to read and write tiles.");
@@ -214,6 +252,7 @@ public class OverlappedTiledWriter {
     finally {
       // close the files
       overlappedTiledWriter.cleanup();
+      overlappedTiledWriter.metrics.report(overlappedTiledWriter.metricsFile);
     }
   }
 
@@ -0,0 +1,373 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import loci.formats.FormatException;
+import loci.formats.IFormatReader;
+import loci.formats.Memoizer;
+import loci.formats.MetadataTools;
+import loci.formats.UnknownFormatException;
+import loci.formats.meta.IMetadata;
+import ome.units.quantity.Length;
+
+/**
+ * Walks a directory tree and reports the physical pixel sizes of every
+ * dataset in it, using the same calibration logic as
+ * {@link ReadPhysicalSize}. Only metadata is read; no pixels are decoded.
+ *
+ * Files are opened concurrently on a pool of threads, with a semaphore
+ * bounding the number of files open at once. Once a dataset has been read,
+ * the files it used are not opened again, so companion files of a
+ * multi-file dataset are skipped. A companion file reached while its
+ * dataset is still being read may still be reported twice.
+ *
+ * One line is written per image as soon as its file has been read, either
+ * as CSV or as JSON lines:
+ *
+ * file,image,physicalSizeX,physicalSizeY,physicalSizeZ,error
+ *
+ * where sizes are in micrometers and empty if not set.
+ *
+ * $ java PhysicalSizeScanner /data/archive --format json --output sizes.jsonl
+ */
+public class PhysicalSizeScanner {
+
+  private final int threads;
+  private final int maxOpenFiles;
+  private final boolean json;
+  private final Writer out;
+
+  private final DetectionCache detectionCache = new DetectionCache();
+  private MetadataCache metadataCache;
+
+  /** Absolute paths of files already read as part of a dataset. */
+  private final Set<String> usedFiles =
+    ConcurrentHashMap.<String>newKeySet();
+
+  private final AtomicLong scanned = new AtomicLong();
+  private final AtomicLong skipped = new AtomicLong();
+  private final AtomicLong unknown = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong images = new AtomicLong();
+
+  /**
+   * @param threads the number of files to read concurrently
+   * @param maxOpenFiles the maximum number of files open at once
+   * @param json true for JSON lines, false for CSV
+   * @param out where to write the results
+   */
+  public PhysicalSizeScanner(int threads, int maxOpenFiles, boolean json,
+    Writer out)
+  {
+    this.threads = threads;
+    this.maxOpenFiles = maxOpenFiles;
+    this.json = json;
+    this.out = out;
+  }
+
+  /** Load parsed metadata from, and save it to, the given cache. */
+  public void setMetadataCache(MetadataCache metadataCache) {
+    this.metadataCache = metadataCache;
+  }
+
+  /**
+   * Scan every regular file under the given directory.
+   *
+   * @param root the directory to scan
+   * @throws IOException if the tree cannot be walked or results written
+   * @throws InterruptedException if interrupted while waiting for files
+   */
+  public void scan(Path root) throws IOException, InterruptedException {
+    if (!json) {
+      write("file,image,physicalSizeX,physicalSizeY,physicalSizeZ,error\n");
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    final Semaphore openFiles = new Semaphore(maxOpenFiles);
+    try {
+      Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+          throws IOException
+        {
+          if (!attrs.isRegularFile()) {
+            return FileVisitResult.CONTINUE;
+          }
+          final String path = file.toAbsolutePath().toString();
+          if (usedFiles.contains(path)) {
+            skipped.incrementAndGet();
+            return FileVisitResult.CONTINUE;
+          }
+          try {
+            // also bounds the number of files waiting to be read
+            openFiles.acquire();
+          }
+          catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return FileVisitResult.TERMINATE;
+          }
+          executor.execute(() -> {
+            try {
+              scanFile(path);
+            }
+            finally {
+              openFiles.release();
+            }
+          });
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException e) {
+          System.err.println("Cannot read " + file + ": " + e.getMessage());
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    }
+    finally {
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      out.flush();
+    }
+  }
+
+  /** Read the metadata of a single file and write one line per image. */
+  private void scanFile(String path) {
+    if (usedFiles.contains(path)) {
+      skipped.incrementAndGet();
+      return;
+    }
+    scanned.incrementAndGet();
+    IMetadata omeMeta = MetadataTools.createOMEXMLMetadata();
+    IFormatReader reader = null;
+    try {
+      if (metadataCache != null) {
+        reader = metadataCache.open(path, omeMeta);
+      }
+      else {
+        reader = detectionCache.open(path, omeMeta);
+      }
+      for (String used : reader.getUsedFiles()) {
+        usedFiles.add(new File(used).getAbsolutePath());
+      }
+
+      StringBuilder lines = new StringBuilder();
+      for (int image=0; image<omeMeta.getImageCount(); image++) {
+        appendLine(lines, path, image,
+          ReadPhysicalSize.toMicrometers(omeMeta.getPixelsPhysicalSizeX(image)),
+          ReadPhysicalSize.toMicrometers(omeMeta.getPixelsPhysicalSizeY(image)),
+          ReadPhysicalSize.toMicrometers(omeMeta.getPixelsPhysicalSizeZ(image)),
+          null);
+        images.incrementAndGet();
+      }
+      write(lines.toString());
+    }
+    catch (UnknownFormatException e) {
+      unknown.incrementAndGet();
+    }
+    catch (FormatException | IOException | RuntimeException e) {
+      failed.incrementAndGet();
+      StringBuilder line = new StringBuilder();
+      appendLine(line, path, -1, null, null, null, String.valueOf(e));
+      try {
+        write(line.toString());
+      }
+      catch (IOException e2) {
+        System.err.println("Failed to write result for " + path);
+        e2.printStackTrace();
+      }
+    }
+    finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        }
+        catch (IOException e) {
+          System.err.println("Failed to close " + path);
+          e.printStackTrace();
+        }
+      }
+    }
+  }
+
+  private void appendLine(StringBuilder line, String path, int image,
+    Length x, Length y, Length z, String error)
+  {
+    if (json) {
+      line.append("{\"file\":").append(quoteJSON(path));
+      if (image >= 0) {
+        line.append(",\"image\":").append(image);
+        line.append(",\"physicalSizeX\":").append(value(x, "null"));
+        line.append(",\"physicalSizeY\":").append(value(y, "null"));
+        line.append(",\"physicalSizeZ\":").append(value(z, "null"));
+      }
+      if (error != null) {
+        line.append(",\"error\":").append(quoteJSON(error));
+      }
+      line.append("}\n");
+    }
+    else {
+      line.append(quoteCSV(path)).append(',');
+      line.append(image >= 0 ? String.valueOf(image) : "").append(',');
+      line.append(value(x, "")).append(',');
+      line.append(value(y, "")).append(',');
+      line.append(value(z, "")).append(',');
+      line.append(error == null ? "" : quoteCSV(error)).append('\n');
+    }
+  }
+
+  private static String value(Length size, String missing) {
+    if (size == null || size.value() == null) {
+      return missing;
+    }
+    return size.value().toString();
+  }
+
+  private static String quoteCSV(String s) {
+    if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) {
+      return s;
+    }
+    return "\"" + s.replace("\"", "\"\"") + "\"";
+  }
+
+  private static String quoteJSON(String s) {
+    StringBuilder quoted = new StringBuilder("\"");
+    for (int i=0; i<s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        quoted.append('\\').append(c);
+      }
+      else if (c < 0x20) {
+        quoted.append(String.format("\\u%04x", (int) c));
+      }
+      else {
+        quoted.append(c);
+      }
+    }
+    return quoted.append('"').toString();
+  }
+
+  private synchronized void write(String lines) throws IOException {
+    out.write(lines);
+    out.flush();
+  }
+
+  @Override
+  public String toString() {
+    return scanned + " files read, " + images + " images, " + skipped +
+      " companion files skipped, " + unknown + " unrecognized, " + failed +
+      " failed";
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.out.println("Usage: java PhysicalSizeScanner directory " +
+        "[--format csv|json] [--output file] [--threads 16] " +
+        "[--max-open-files 64] [--memo-dir directory] " +
+        "[--memo-min-elapsed milliseconds]");
+      System.exit(1);
+    }
+    int threads = 4 * Runtime.getRuntime().availableProcessors();
+    int maxOpenFiles = -1;
+    boolean json = false;
+    String output = null;
+    String memoDir = null;
+    long minimumElapsed = Memoizer.DEFAULT_MINIMUM_ELAPSED;
+    for (int i=1; i<args.length; i++) {
+      if (args[i].equals("--format")) {
+        json = args[++i].equals("json");
+      }
+      else if (args[i].equals("--output")) {
+        output = args[++i];
+      }
+      else if (args[i].equals("--threads")) {
+        threads = Integer.parseInt(args[++i]);
+      }
+      else if (args[i].equals("--max-open-files")) {
+        maxOpenFiles = Integer.parseInt(args[++i]);
+      }
+      else if (args[i].equals("--memo-dir")) {
+        memoDir = args[++i];
+      }
+      else if (args[i].equals("--memo-min-elapsed")) {
+        minimumElapsed = Long.parseLong(args[++i]);
+      }
+    }
+    if (maxOpenFiles <= 0) {
+      maxOpenFiles = threads;
+    }
+
+    Writer out = new BufferedWriter(new OutputStreamWriter(output == null ?
+      System.out : Files.newOutputStream(Paths.get(output)),
+      StandardCharsets.UTF_8));
+    PhysicalSizeScanner scanner =
+      new PhysicalSizeScanner(threads, maxOpenFiles, json, out);
+    if (memoDir != null) {
+      scanner.setMetadataCache(
+        new MetadataCache(new File(memoDir), minimumElapsed));
+    }
+
+    long start = System.nanoTime();
+    try {
+      scanner.scan(Paths.get(args[0]));
+    }
+    finally {
+      if (output != null) {
+        out.close();
+      }
+    }
+    double minutes = (System.nanoTime() - start) / 6e10;
+    System.err.println(scanner);
+    System.err.println(scanner.detectionCache);
+    System.err.printf("%.0f files per minute%n", scanner.scanned.get() / minutes);
+  }
+
+}
@@ -0,0 +1,361 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import loci.formats.FormatTools;
+import loci.formats.MetadataTools;
+import loci.formats.meta.IMetadata;
+
+import ome.xml.model.enums.DimensionOrder;
+import ome.xml.model.enums.EnumerationException;
+import ome.xml.model.enums.NamingConvention;
+import ome.xml.model.enums.PixelType;
+import ome.xml.model.primitives.NonNegativeInteger;
+import ome.xml.model.primitives.PositiveInteger;
+
+/**
+ * Describes a plate as a template - a grid of wells, a number of fields
+ * per well and one pixels description shared by every field - and turns
+ * it into OME-XML metadata.
+ *
+ * {@link #build()} materialises the template as an IMetadata object for a
+ * writer. It makes the same setter calls per field as FileExportSPW, as
+ * the store offers no other way in; it only creates the values shared by
+ * every image once and builds IDs without MetadataTools.createLSID. The
+ * store still holds every well and image in memory.
+ *
+ * {@link #writeXML(OutputStream)} streams the OME-XML document straight
+ * from the template instead, in constant memory however large the plate
+ * is. Each Pixels element is MetadataOnly, so the document describes the
+ * plate layout without referring to any pixel data; FileExportSPW writes
+ * one next to the OME-TIFF when given --metadata-xml.
+ *
+ * To stream the metadata of a 1536 well plate with 100 fields per well:
+ *
+ * $ java PlateMetadataBuilder plate.ome.xml 32 48 100
+ */
+public class PlateMetadataBuilder {
+
+  private static final String NAMESPACE =
+    "http://www.openmicroscopy.org/Schemas/OME/2016-06";
+
+  /** Standard plate formats, as {wells, rows, columns}. */
+  private static final int[][] PLATE_FORMATS = {
+    {6, 2, 3}, {12, 3, 4}, {24, 4, 6}, {48, 6, 8}, {96, 8, 12},
+    {384, 16, 24}, {1536, 32, 48}
+  };
+
+  private final int rows;
+  private final int cols;
+  private final int fields;
+
+  private String name = "Plate";
+  private int sizeX = 512;
+  private int sizeY = 512;
+  private int sizeZ = 1;
+  private int sizeC = 1;
+  private int sizeT = 1;
+  private int pixelType = FormatTools.UINT16;
+  private boolean bigEndian = true;
+
+  /**
+   * @param rows the number of rows of wells
+   * @param cols the number of columns of wells
+   * @param fields the number of fields of view in each well
+   */
+  public PlateMetadataBuilder(int rows, int cols, int fields) {
+    if (rows < 1 || cols < 1 || fields < 1) {
+      throw new IllegalArgumentException("Plate must have at least one field");
+    }
+    this.rows = rows;
+    this.cols = cols;
+    this.fields = fields;
+  }
+
+  /** @param name the name of the plate */
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  /**
+   * @param sizeX the width of every image in pixels
+   * @param sizeY the height of every image in pixels
+   */
+  public void setImageSize(int sizeX, int sizeY) {
+    this.sizeX = sizeX;
+    this.sizeY = sizeY;
+  }
+
+  /**
+   * @param sizeZ the number of Z sections of every image
+   * @param sizeC the number of channels of every image
+   * @param sizeT the number of timepoints of every image
+   */
+  public void setDimensions(int sizeZ, int sizeC, int sizeT) {
+    this.sizeZ = sizeZ;
+    this.sizeC = sizeC;
+    this.sizeT = sizeT;
+  }
+
+  /** @param pixelType the pixel type; @see loci.formats.FormatTools */
+  public void setPixelType(int pixelType) {
+    this.pixelType = pixelType;
+  }
+
+  /** @param bigEndian true if pixel data is stored in big-endian order */
+  public void setBigEndian(boolean bigEndian) {
+    this.bigEndian = bigEndian;
+  }
+
+  /** @return the number of images, one per field of every well */
+  public int getImageCount() {
+    return rows * cols * fields;
+  }
+
+  /**
+   * Look up the layout of a standard plate format.
+   *
+   * @param wells one of 6, 12, 24, 48, 96, 384 or 1536
+   * @return the number of rows and columns, e.g. {8, 12} for 96 wells
+   * @throws IllegalArgumentException if the plate format is not standard
+   */
+  public static int[] getPlateSize(int wells) {
+    for (int[] format : PLATE_FORMATS) {
+      if (format[0] == wells) {
+        return new int[] {format[1], format[2]};
+      }
+    }
+    throw new IllegalArgumentException("Not a standard plate format: " +
+      wells + " wells");
+  }
+
+  /**
+   * Name a plate row using letters: A to Z, then AA, AB and so on.
+   *
+   * @param row the index of the row
+   * @return the row name
+   */
+  public static String getRowName(int row) {
+    StringBuilder rowName = new StringBuilder();
+    for (int r=row + 1; r>0; r=(r - 1) / 26) {
+      rowName.insert(0, (char) ('A' + (r - 1) % 26));
+    }
+    return rowName.toString();
+  }
+
+  /**
+   * Populate a new metadata store with the plate, its wells and images.
+   * Images are numbered by row, then column, then field.
+   *
+   * @return the populated store
+   * @throws EnumerationException if the pixel type has no OME-XML name
+   */
+  public IMetadata build() throws EnumerationException {
+    IMetadata meta = MetadataTools.createOMEXMLMetadata();
+
+    meta.setPlateID("Plate:0", 0);
+    meta.setPlateName(name, 0);
+    meta.setPlateRowNamingConvention(NamingConvention.LETTER, 0);
+    meta.setPlateColumnNamingConvention(NamingConvention.NUMBER, 0);
+    meta.setPlateRows(new PositiveInteger(rows), 0);
+    meta.setPlateColumns(new PositiveInteger(cols), 0);
+
+    // values shared by every image
+    PixelType type =
+      PixelType.fromString(FormatTools.getPixelTypeString(pixelType));
+    Boolean endian = Boolean.valueOf(bigEndian);
+    PositiveInteger one = new PositiveInteger(1);
+    PositiveInteger x = new PositiveInteger(sizeX);
+    PositiveInteger y = new PositiveInteger(sizeY);
+    PositiveInteger z = new PositiveInteger(sizeZ);
+    PositiveInteger c = new PositiveInteger(sizeC);
+    PositiveInteger t = new PositiveInteger(sizeT);
+    NonNegativeInteger[] columns = new NonNegativeInteger[cols];
+    for (int col=0; col<cols; col++) {
+      columns[col] = new NonNegativeInteger(col);
+    }
+
+    int well = 0;
+    int series = 0;
+    for (int row=0; row<rows; row++) {
+      String rowName = getRowName(row);
+      NonNegativeInteger rowIndex = new NonNegativeInteger(row);
+      for (int col=0; col<cols; col++) {
+        meta.setWellID("Well:" + well, 0, well);
+        meta.setWellRow(rowIndex, 0, well);
+        meta.setWellColumn(columns[col], 0, well);
+        String wellName = rowName + ":" + (col + 1) + ":FOV:";
+
+        for (int fov=0; fov<fields; fov++) {
+          String imageID = "Image:" + series;
+          meta.setImageID(imageID, series);
+          meta.setImageName(wellName + (fov + 1), series);
+          meta.setPixelsID("Pixels:" + series, series);
+          meta.setPixelsBinDataBigEndian(endian, series, 0);
+          meta.setPixelsDimensionOrder(DimensionOrder.XYZCT, series);
+          meta.setPixelsType(type, series);
+          meta.setPixelsSizeX(x, series);
+          meta.setPixelsSizeY(y, series);
+          meta.setPixelsSizeZ(z, series);
+          meta.setPixelsSizeC(c, series);
+          meta.setPixelsSizeT(t, series);
+          for (int channel=0; channel<sizeC; channel++) {
+            meta.setChannelID("Channel:" + series + ":" + channel, series,
+              channel);
+            meta.setChannelSamplesPerPixel(one, series, channel);
+          }
+
+          meta.setWellSampleID("WellSample:" + well + ":" + fov, 0, well, fov);
+          meta.setWellSampleIndex(new NonNegativeInteger(series), 0, well, fov);
+          meta.setWellSampleImageRef(imageID, 0, well, fov);
+          series++;
+        }
+        well++;
+      }
+    }
+    return meta;
+  }
+
+  /**
+   * Write the plate as a metadata-only OME-XML document without building
+   * it in memory. The document describes the same plate, wells and images
+   * as {@link #build()}. The stream is flushed but not closed.
+   *
+   * @param out the stream to write to
+   * @throws IOException if the stream cannot be written
+   */
+  public void writeXML(OutputStream out) throws IOException {
+    Writer xml = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"),
+      1 << 16);
+    xml.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    xml.write("<OME xmlns=\"" + NAMESPACE + "\" " +
+      "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" " +
+      "xsi:schemaLocation=\"" + NAMESPACE + " " + NAMESPACE + "/ome.xsd\">\n");
+
+    xml.write("  <Plate ID=\"Plate:0\" Name=\"" + escape(name) +
+      "\" RowNamingConvention=\"letter\" ColumnNamingConvention=\"number\"" +
+      " Rows=\"" + rows + "\" Columns=\"" + cols + "\">\n");
+    int well = 0;
+    int series = 0;
+    for (int row=0; row<rows; row++) {
+      for (int col=0; col<cols; col++) {
+        xml.write("    <Well ID=\"Well:" + well + "\" Column=\"" + col +
+          "\" Row=\"" + row + "\">\n");
+        for (int fov=0; fov<fields; fov++) {
+          xml.write("      <WellSample ID=\"WellSample:" + well + ":" + fov +
+            "\" Index=\"" + series + "\">\n");
+          xml.write("        <ImageRef ID=\"Image:" + series + "\"/>\n");
+          xml.write("      </WellSample>\n");
+          series++;
+        }
+        xml.write("    </Well>\n");
+        well++;
+      }
+    }
+    xml.write("  </Plate>\n");
+
+    // everything after the image and pixels IDs is the same for all images
+    String pixels = "\" DimensionOrder=\"XYZCT\" Type=\"" +
+      FormatTools.getPixelTypeString(pixelType) + "\" BigEndian=\"" +
+      bigEndian + "\" SizeX=\"" + sizeX + "\" SizeY=\"" + sizeY +
+      "\" SizeZ=\"" + sizeZ + "\" SizeC=\"" + sizeC + "\" SizeT=\"" + sizeT +
+      "\">\n";
+    series = 0;
+    for (int row=0; row<rows; row++) {
+      String rowName = getRowName(row);
+      for (int col=0; col<cols; col++) {
+        for (int fov=0; fov<fields; fov++) {
+          xml.write("  <Image ID=\"Image:" + series + "\" Name=\"" + rowName +
+            ":" + (col + 1) + ":FOV:" + (fov + 1) + "\">\n");
+          xml.write("    <Pixels ID=\"Pixels:" + series + pixels);
+          for (int channel=0; channel<sizeC; channel++) {
+            xml.write("      <Channel ID=\"Channel:" + series + ":" + channel +
+              "\" SamplesPerPixel=\"1\"/>\n");
+          }
+          xml.write("      <MetadataOnly/>\n");
+          xml.write("    </Pixels>\n");
+          xml.write("  </Image>\n");
+          series++;
+        }
+      }
+    }
+    xml.write("</OME>\n");
+    xml.flush();
+  }
+
+  /** Escape a string for use in an XML attribute value. */
+  private static String escape(String value) {
+    StringBuilder escaped = new StringBuilder(value.length());
+    for (int i=0; i<value.length(); i++) {
+      char ch = value.charAt(i);
+      switch (ch) {
+        case '&': escaped.append("&amp;"); break;
+        case '<': escaped.append("&lt;"); break;
+        case '>': escaped.append("&gt;"); break;
+        case '"': escaped.append("&quot;"); break;
+        default: escaped.append(ch);
+      }
+    }
+    return escaped.toString();
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 4) {
+      System.err.println("Usage: java PlateMetadataBuilder output.ome.xml " +
+        "rows columns fields");
+      System.exit(1);
+    }
+    PlateMetadataBuilder builder = new PlateMetadataBuilder(
+      Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+      Integer.parseInt(args[3]));
+    builder.setName("Synthetic plate");
+
+    long start = System.nanoTime();
+    try (OutputStream out =
+      new BufferedOutputStream(new FileOutputStream(args[0])))
+    {
+      builder.writeXML(out);
+    }
+    System.out.println("Wrote metadata for " + builder.getImageCount() +
+      " images to " + args[0] + " in " +
+      (System.nanoTime() - start) / 1000000 + " ms");
+  }
+
+}
@@ -30,10 +30,13 @@
  * #L%
  */
 
+import java.io.File;
 import java.io.IOException;
 
 import loci.formats.FormatException;
+import loci.formats.IFormatReader;
 import loci.formats.ImageReader;
+import loci.formats.Memoizer;
 import loci.formats.MetadataTools;
 import loci.formats.meta.IMetadata;
 import ome.units.UNITS;
@@ -54,12 +57,31 @@ public class ReadPhysicalSize {
    * @throws IOException if an I/O error occurs processing the file
    */
   public static void readPhysicalSize(final String inputFile) throws FormatException, IOException {
-    final ImageReader reader = new ImageReader();
-    final IMetadata omeMeta = MetadataTools.createOMEXMLMetadata();
-    reader.setMetadataStore(omeMeta);
-    reader.setId(inputFile);
+    readPhysicalSize(inputFile, null);
+  }
 
-    final Unit<Length> targetUnit = UNITS.MICROMETER;
+  /**
+   * Reads the physical dimensions of the input file provided then converts and displays them in micrometers,
+   * loading previously parsed metadata from the given cache where possible
+   *
+   * @param inputFile the file to be read
+   * @param cache the metadata cache to use, or null to parse the file
+   * @throws FormatException if a parsing error occurs processing the file.
+   * @throws IOException if an I/O error occurs processing the file
+   */
+  public static void readPhysicalSize(final String inputFile, final MetadataCache cache)
+    throws FormatException, IOException
+  {
+    final IMetadata omeMeta = MetadataTools.createOMEXMLMetadata();
+    final IFormatReader reader;
+    if (cache != null) {
+      reader = cache.open(inputFile, omeMeta);
+    }
+    else {
+      reader = new ImageReader();
+      reader.setMetadataStore(omeMeta);
+      reader.setId(inputFile);
+    }
 
     for (int image=0; image<omeMeta.getImageCount(); image++) {
       final Length physSizeX = omeMeta.getPixelsPhysicalSizeX(image);
@@ -69,17 +91,17 @@ public class ReadPhysicalSize {
       System.out.println("Physical calibration - Image: " + image);
 
       if (physSizeX != null) {
-        final Length convertedSizeX = new Length(physSizeX.value(targetUnit), targetUnit);
+        final Length convertedSizeX = toMicrometers(physSizeX);
         System.out.println("\tX = " + physSizeX.value() + " " + physSizeX.unit().getSymbol()
             + " = " + convertedSizeX.value() + " " + convertedSizeX.unit().getSymbol());
       }
       if (physSizeY != null) {
-        final Length convertedSizeY = new Length(physSizeY.value(targetUnit), targetUnit);
+        final Length convertedSizeY = toMicrometers(physSizeY);
         System.out.println("\tY = " + physSizeY.value() + " " + physSizeY.unit().getSymbol()
             + " = " + convertedSizeY.value() + " " + convertedSizeY.unit().getSymbol());
       }
       if (physSizeZ != null) {
-        final Length convertedSizeZ = new Length(physSizeZ.value(targetUnit), targetUnit);
+        final Length convertedSizeZ = toMicrometers(physSizeZ);
         System.out.println("\tZ = " + physSizeZ.value() + " " + physSizeZ.unit().getSymbol()
             + " = " + convertedSizeZ.value() + " " + convertedSizeZ.unit().getSymbol());
       }
@@ -87,16 +109,57 @@ public class ReadPhysicalSize {
     reader.close();
   }
     
+  /**
+   * Converts a physical size to micrometers
+   *
+   * @param size the size to convert, or null
+   * @return the size in micrometers, or null if size is null
+   */
+  public static Length toMicrometers(final Length size) {
+    if (size == null) {
+      return null;
+    }
+    final Unit<Length> targetUnit = UNITS.MICROMETER;
+    return new Length(size.value(targetUnit), targetUnit);
+  }
+
   /**
    * To read the physical size dimensions and units of a file and display them in micrometers:
    *
    * $ java ReadPhysicalSize input-file.ome.tiff
-   * @param args Input file.
+   *
+   * To save the parsed metadata in /tmp/memo, so that reading the same file again is fast:
+   *
+   * $ java ReadPhysicalSize input-file.ome.tiff --memo-dir /tmp/memo
+   *
+   * To save the metadata however quickly the file parses, rather than only
+   * if it takes longer than the Memoizer default:
+   *
+   * $ java ReadPhysicalSize input-file.ome.tiff --memo-dir /tmp/memo --memo-min-elapsed 0
+   * @param args Input file, optionally followed by --memo-dir and a directory
+   *   and --memo-min-elapsed and a number of milliseconds.
    * @throws FormatException if a parsing error occurs processing the file.
    * @throws IOException if an I/O error occurs processing the file
    */
   public static void main(String[] args) throws Exception {
-    readPhysicalSize(args[0]);
+    File memoDir = null;
+    long minimumElapsed = Memoizer.DEFAULT_MINIMUM_ELAPSED;
+    for (int i=1; i<args.length; i++) {
+      if (args[i].equals("--memo-dir")) {
+        memoDir = new File(args[++i]);
+      }
+      else if (args[i].equals("--memo-min-elapsed")) {
+        minimumElapsed = Long.parseLong(args[++i]);
+      }
+    }
+    MetadataCache cache = null;
+    if (memoDir != null) {
+      cache = new MetadataCache(memoDir, minimumElapsed);
+    }
+    readPhysicalSize(args[0], cache);
+    if (cache != null) {
+      System.out.println(cache);
+    }
   }
 
 }
@@ -32,6 +32,7 @@
 
 import java.io.*;
 import loci.common.ByteArrayHandle;
+import loci.common.IRandomAccess;
 import loci.common.Location;
 import loci.common.services.DependencyException;
 import loci.common.services.ServiceException;
@@ -60,19 +61,53 @@ public class ReadWriteInMemory {
   {
     if (args.length < 1) {
       System.out.println("Please specify a (small) image file.");
+      System.out.println("Use --mapped to map a large file instead of reading it.");
+      System.out.println("Use --direct to keep output off the heap, and");
+      System.out.println("--spill-threshold <bytes> to move it to a temporary file.");
       System.exit(1);
     }
     String path = args[0];
+    boolean mapped = false;
+    boolean direct = false;
+    long spillThreshold = 0;
+    for (int i=1; i<args.length; i++) {
+      if (args[i].equals("--mapped")) {
+        mapped = true;
+      }
+      else if (args[i].equals("--direct")) {
+        direct = true;
+      }
+      else if (args[i].equals("--spill-threshold")) {
+        spillThreshold = Long.parseLong(args[++i]);
+      }
+    }
 
     /* file-read-start */
-    // read in entire file
-    System.out.println("Reading file into memory from disk...");
     File inputFile = new File(path);
-    int fileSize = (int) inputFile.length();
-    DataInputStream in = new DataInputStream(new FileInputStream(inputFile));
-    byte[] inBytes = new byte[fileSize];
-    in.readFully(inBytes);
-    System.out.println(fileSize + " bytes read.");
+    IRandomAccess inHandle;
+    if (mapped) {
+      // map the file; pages are read from disk as they are accessed
+      System.out.println("Mapping file into memory...");
+      inHandle = new MappedFileHandle(inputFile);
+      System.out.println(inHandle.length() + " bytes mapped.");
+    }
+    else {
+      // read in entire file
+      System.out.println("Reading file into memory from disk...");
+      long fileSize = inputFile.length();
+      if (fileSize > Integer.MAX_VALUE) {
+        throw new IOException(path + " is too large to read into a byte " +
+          "array (" + fileSize + " bytes); use --mapped");
+      }
+      byte[] inBytes = new byte[(int) fileSize];
+      try (DataInputStream in =
+        new DataInputStream(new FileInputStream(inputFile)))
+      {
+        in.readFully(inBytes);
+      }
+      System.out.println(fileSize + " bytes read.");
+      inHandle = new ByteArrayHandle(inBytes);
+    }
     /* file-read-end */
 
     /* mapping-start */
@@ -81,9 +116,9 @@ public class ReadWriteInMemory {
     int dot = fileName.lastIndexOf(".");
     String suffix = dot < 0 ? "" : fileName.substring(dot);
 
-    // map input id string to input byte array
+    // map input id string to input handle
     String inId = "inBytes" + suffix;
-    Location.mapFile(inId, new ByteArrayHandle(inBytes));
+    Location.mapFile(inId, inHandle);
     /* mapping-end */
 
     // read data from byte array using ImageReader
@@ -119,9 +154,10 @@ public class ReadWriteInMemory {
     System.out.println("\tSizeT = " + sizeT);
 
     /* out—mapping-start */
-    // map output id string to output byte array
+    // map output id string to output handle, which grows in chunks
     String outId = fileName + ".ome.tif";
-    ByteArrayHandle outputFile = new ByteArrayHandle();
+    SegmentedOutputHandle outputFile = new SegmentedOutputHandle(
+      SegmentedOutputHandle.DEFAULT_CHUNK_SIZE, direct, spillThreshold);
     Location.mapFile(outId, outputFile);
     /* out—mapping-end */
 
@@ -151,19 +187,19 @@ public class ReadWriteInMemory {
     reader.close();
     writer.close();
     System.out.println();
-
-    byte[] outBytes = outputFile.getBytes();
-    outputFile.close();
     /* write-end */
 
     /* flush-start */
-    // flush output byte array to disk
+    // flush output chunks to disk without copying them into one array
     System.out.println();
     System.out.println("Flushing image data to disk...");
+    if (outputFile.isSpilled()) {
+      System.out.println("Output was spilled to a temporary file.");
+    }
     File outFile = new File(fileName + ".ome.tif");
-    DataOutputStream out = new DataOutputStream(new FileOutputStream(outFile));
-    out.write(outBytes);
-    out.close();
+    outputFile.flushTo(outFile);
+    System.out.println(outputFile.length() + " bytes written.");
+    outputFile.dispose();
     /* flush-end */
   }
 
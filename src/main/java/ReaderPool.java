@@ -0,0 +1,358 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import loci.formats.FormatException;
+import loci.formats.IFormatReader;
+import loci.formats.ImageReader;
+import loci.formats.MetadataTools;
+import loci.formats.meta.IMetadata;
+
+/**
+ * A pool of initialized readers keyed by file id.
+ *
+ * {@link #borrow(String)} hands out a reader on which setId has already
+ * been called, together with its metadata, so repeated opens of the same
+ * file skip format detection and metadata parsing. A borrowed reader
+ * belongs to the borrowing thread until it is passed to
+ * {@link #release(IFormatReader)}; if every reader for an id is in use, a
+ * new one is initialized.
+ *
+ * Idle readers are evicted in least recently used order once more than
+ * the maximum number of readers exist. Independently, once more than the
+ * maximum number of files are open, the least recently used idle readers
+ * have their files closed with close(true). They keep their metadata and
+ * reopen the file when next borrowed.
+ *
+ * Example:
+ *
+ * $ java ReaderPool input-file [iterations]
+ */
+public class ReaderPool implements Closeable {
+
+  /** A reader together with the id it was initialized with. */
+  private static class Entry {
+    final String id;
+    final IFormatReader reader;
+    final IMetadata metadata;
+    boolean fileOpen = true;
+
+    Entry(String id, IFormatReader reader, IMetadata metadata) {
+      this.id = id;
+      this.reader = reader;
+      this.metadata = metadata;
+    }
+  }
+
+  private final int maxReaders;
+  private final int maxOpenFiles;
+
+  /** Idle readers for each id, most recently released last. */
+  private final Map<String, Deque<Entry>> idleById =
+    new HashMap<String, Deque<Entry>>();
+
+  /** All idle readers, least recently released first. */
+  private final LinkedHashSet<Entry> idle = new LinkedHashSet<Entry>();
+
+  private final Map<IFormatReader, Entry> borrowed =
+    new IdentityHashMap<IFormatReader, Entry>();
+
+  private int openFiles;
+  private boolean closed;
+  private volatile boolean flattenedResolutions = true;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong reopens = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * @param maxReaders the number of initialized readers to keep
+   * @param maxOpenFiles the number of readers that may keep their files
+   *   open; borrowed readers always have their files open
+   */
+  public ReaderPool(int maxReaders, int maxOpenFiles) {
+    this.maxReaders = maxReaders;
+    this.maxOpenFiles = maxOpenFiles;
+  }
+
+  /**
+   * Set whether newly initialized readers flatten sub-resolutions into
+   * separate series; see IFormatReader.setFlattenedResolutions. Readers
+   * already in the pool are not affected.
+   *
+   * @param flattened false to expose resolutions through setResolution
+   */
+  public void setFlattenedResolutions(boolean flattened) {
+    flattenedResolutions = flattened;
+  }
+
+  /**
+   * Borrow a reader for the given id, initializing one if none is idle.
+   * The reader is set to series 0 and must be returned with
+   * {@link #release(IFormatReader)}.
+   *
+   * @param id the file to read
+   * @return an initialized reader
+   * @throws FormatException if a new reader cannot be initialized
+   * @throws IOException if the file cannot be opened
+   */
+  public IFormatReader borrow(String id) throws FormatException, IOException {
+    Entry entry = null;
+    synchronized (this) {
+      if (closed) {
+        throw new IllegalStateException("ReaderPool is closed");
+      }
+      Deque<Entry> readers = idleById.get(id);
+      if (readers != null && !readers.isEmpty()) {
+        entry = readers.pollLast();
+        idle.remove(entry);
+        borrowed.put(entry.reader, entry);
+      }
+    }
+
+    if (entry == null) {
+      misses.incrementAndGet();
+      entry = open(id);
+      synchronized (this) {
+        borrowed.put(entry.reader, entry);
+        openFiles++;
+      }
+    }
+    else {
+      hits.incrementAndGet();
+      if (!entry.fileOpen) {
+        try {
+          entry.reader.reopenFile();
+        }
+        catch (IOException e) {
+          synchronized (this) {
+            borrowed.remove(entry.reader);
+          }
+          entry.reader.close();
+          throw e;
+        }
+        reopens.incrementAndGet();
+        synchronized (this) {
+          entry.fileOpen = true;
+          openFiles++;
+        }
+      }
+    }
+    trim();
+    return entry.reader;
+  }
+
+  /**
+   * Return a borrowed reader to the pool.
+   *
+   * @param reader a reader obtained from {@link #borrow(String)}
+   */
+  public void release(IFormatReader reader) {
+    synchronized (this) {
+      Entry entry = borrowed.remove(reader);
+      if (entry == null) {
+        throw new IllegalArgumentException("Reader was not borrowed from this pool");
+      }
+      entry.reader.setSeries(0);
+      Deque<Entry> readers = idleById.get(entry.id);
+      if (readers == null) {
+        readers = new ArrayDeque<Entry>();
+        idleById.put(entry.id, readers);
+      }
+      readers.addLast(entry);
+      idle.add(entry);
+    }
+    trim();
+  }
+
+  /**
+   * @param reader a reader obtained from {@link #borrow(String)}
+   * @return the metadata populated when the reader was initialized
+   */
+  public synchronized IMetadata getMetadata(IFormatReader reader) {
+    Entry entry = borrowed.get(reader);
+    if (entry == null) {
+      throw new IllegalArgumentException("Reader was not borrowed from this pool");
+    }
+    return entry.metadata;
+  }
+
+  /** @return the number of borrows served by an idle reader */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /** @return the number of borrows that had to initialize a reader */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /** @return the number of borrows that had to reopen a closed file */
+  public long getReopenCount() {
+    return reopens.get();
+  }
+
+  /** @return the number of readers evicted from the pool */
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  /** Close every idle reader. Borrowed readers are closed on release. */
+  @Override
+  public void close() throws IOException {
+    List<Entry> toClose;
+    synchronized (this) {
+      closed = true;
+      toClose = new ArrayList<Entry>(idle);
+      idle.clear();
+      idleById.clear();
+    }
+    for (Entry entry : toClose) {
+      entry.reader.close();
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return hits + " hits, " + misses + " misses, " + reopens + " reopens, " +
+      evictions + " evictions; " + (idle.size() + borrowed.size()) +
+      " readers, " + openFiles + " open files";
+  }
+
+  private Entry open(String id) throws FormatException, IOException {
+    IMetadata metadata = MetadataTools.createOMEXMLMetadata();
+    ImageReader reader = new ImageReader();
+    reader.setFlattenedResolutions(flattenedResolutions);
+    reader.setMetadataStore(metadata);
+    reader.setId(id);
+    return new Entry(id, reader, metadata);
+  }
+
+  /**
+   * Evict idle readers beyond the reader limit and close the files of idle
+   * readers beyond the open file limit, least recently used first. Once the
+   * pool is closed, every idle reader is evicted.
+   */
+  private void trim() {
+    List<Entry> evict = new ArrayList<Entry>();
+    List<Entry> closeFiles = new ArrayList<Entry>();
+    synchronized (this) {
+      int readers = idle.size() + borrowed.size();
+      Iterator<Entry> lru = idle.iterator();
+      while (lru.hasNext() && (closed || readers > maxReaders)) {
+        Entry entry = lru.next();
+        lru.remove();
+        idleById.get(entry.id).remove(entry);
+        if (entry.fileOpen) {
+          openFiles--;
+        }
+        evict.add(entry);
+        readers--;
+      }
+      int open = openFiles;
+      for (Entry entry : idle) {
+        if (open <= maxOpenFiles) {
+          break;
+        }
+        if (entry.fileOpen) {
+          entry.fileOpen = false;
+          closeFiles.add(entry);
+          open--;
+        }
+      }
+      openFiles = open;
+    }
+
+    for (Entry entry : evict) {
+      evictions.incrementAndGet();
+      closeQuietly(entry, false);
+    }
+    for (Entry entry : closeFiles) {
+      closeQuietly(entry, true);
+    }
+  }
+
+  private static void closeQuietly(Entry entry, boolean fileOnly) {
+    try {
+      entry.reader.close(fileOnly);
+    }
+    catch (IOException e) {
+      System.err.println("Failed to close reader for " + entry.id);
+      e.printStackTrace();
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.out.println("Usage: java ReaderPool input-file [iterations]");
+      System.exit(1);
+    }
+    String id = args[0];
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+    try (ReaderPool pool = new ReaderPool(16, 8)) {
+      long start = System.nanoTime();
+      IFormatReader reader = pool.borrow(id);
+      long cold = System.nanoTime() - start;
+      System.out.println(pool.getMetadata(reader).getImageCount() +
+        " image(s) in " + id);
+      pool.release(reader);
+
+      start = System.nanoTime();
+      for (int i=0; i<iterations; i++) {
+        reader = pool.borrow(id);
+        reader.getSizeX();
+        pool.release(reader);
+      }
+      long warm = (System.nanoTime() - start) / iterations;
+
+      System.out.println("First open: " + cold / 1000 + " us");
+      System.out.println("Pooled open: " + warm / 1000.0 + " us");
+      System.out.println(pool);
+    }
+  }
+
+}
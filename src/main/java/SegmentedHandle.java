@@ -0,0 +1,545 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import loci.common.IRandomAccess;
+
+/**
+ * An {@link IRandomAccess} over a list of equally sized {@link ByteBuffer}
+ * segments, so the data it covers is not limited to the 2 GB that a single
+ * array or buffer can address and is never copied into one contiguous
+ * block.
+ *
+ * The segments may be heap buffers, direct buffers or mapped regions of a
+ * file. Subclasses add segments with {@link #addSegment(ByteBuffer)} and
+ * may override {@link #grow(long)} to allow writes past the current
+ * capacity; by default the handle cannot grow.
+ *
+ * As with the other Bio-Formats handles, instances are not thread safe.
+ */
+public class SegmentedHandle implements IRandomAccess {
+
+  private final int segmentShift;
+  private final int segmentMask;
+  private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+  private final byte[] scratch = new byte[8];
+
+  private long length;
+  private long position;
+  private ByteOrder order = ByteOrder.BIG_ENDIAN;
+
+  /**
+   * @param segmentSize the size of every segment but the last; must be a
+   *   power of two
+   */
+  protected SegmentedHandle(int segmentSize) {
+    if (segmentSize <= 0 || Integer.bitCount(segmentSize) != 1) {
+      throw new IllegalArgumentException(
+        "Segment size must be a power of two: " + segmentSize);
+    }
+    segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+    segmentMask = segmentSize - 1;
+  }
+
+  // -- SegmentedHandle API --
+
+  /** @return the size of every segment but the last */
+  public int getSegmentSize() {
+    return segmentMask + 1;
+  }
+
+  /** @return the number of bytes the current segments can hold */
+  public long getCapacity() {
+    if (segments.isEmpty()) {
+      return 0;
+    }
+    ByteBuffer last = segments.get(segments.size() - 1);
+    return ((long) (segments.size() - 1) << segmentShift) + last.capacity();
+  }
+
+  /**
+   * Append a segment. Every segment but the last must be exactly
+   * {@link #getSegmentSize()} bytes.
+   */
+  protected void addSegment(ByteBuffer segment) {
+    segment.order(order);
+    segments.add(segment);
+  }
+
+  /** @return the segments, in order */
+  protected List<ByteBuffer> getSegments() {
+    return segments;
+  }
+
+  /** Drop all segments, e.g. so they can be replaced by a subclass. */
+  protected void clearSegments() {
+    segments.clear();
+  }
+
+  /**
+   * Ensure the segments can hold at least the given number of bytes.
+   * The default implementation fails, making the handle fixed size.
+   *
+   * @param capacity the number of bytes required
+   * @throws IOException if the handle cannot grow
+   */
+  protected void grow(long capacity) throws IOException {
+    throw new IOException("Cannot extend " + getClass().getSimpleName() +
+      " to " + capacity + " bytes");
+  }
+
+  /** @return true if the segments must not be written to */
+  protected boolean isReadOnly() {
+    return false;
+  }
+
+  /** Set the length without touching the segments. */
+  protected void setLengthInternal(long newLength) {
+    length = newLength;
+    if (position > length) {
+      position = length;
+    }
+  }
+
+  private ByteBuffer segment(long pos) {
+    ByteBuffer segment = segments.get((int) (pos >>> segmentShift));
+    segment.position((int) (pos & segmentMask));
+    return segment;
+  }
+
+  private void ensureWritable(long end) throws IOException {
+    if (isReadOnly()) {
+      throw new IOException(getClass().getSimpleName() + " is read-only");
+    }
+    if (end > getCapacity()) {
+      grow(end);
+    }
+    if (end > length) {
+      length = end;
+    }
+  }
+
+  private void checkAvailable(long n) throws EOFException {
+    if (position + n > length) {
+      throw new EOFException();
+    }
+  }
+
+  /** @return true if the next n bytes lie within a single segment */
+  private boolean inOneSegment(int n) {
+    return (position >>> segmentShift) == ((position + n - 1) >>> segmentShift);
+  }
+
+  private void readScratch(int n) throws IOException {
+    readFully(scratch, 0, n);
+  }
+
+  private long scratchValue(int n) {
+    long value = 0;
+    if (order == ByteOrder.BIG_ENDIAN) {
+      for (int i=0; i<n; i++) {
+        value = (value << 8) | (scratch[i] & 0xff);
+      }
+    }
+    else {
+      for (int i=n-1; i>=0; i--) {
+        value = (value << 8) | (scratch[i] & 0xff);
+      }
+    }
+    return value;
+  }
+
+  private void writeScratch(long value, int n) throws IOException {
+    if (order == ByteOrder.BIG_ENDIAN) {
+      for (int i=n-1; i>=0; i--) {
+        scratch[i] = (byte) value;
+        value >>>= 8;
+      }
+    }
+    else {
+      for (int i=0; i<n; i++) {
+        scratch[i] = (byte) value;
+        value >>>= 8;
+      }
+    }
+    write(scratch, 0, n);
+  }
+
+  // -- IRandomAccess API --
+
+  /**
+   * Does nothing. Like {@link loci.common.ByteArrayHandle}, a handle
+   * registered with {@link loci.common.Location#mapFile} is closed every
+   * time a stream over it is closed, so its data must remain available.
+   */
+  @Override
+  public void close() throws IOException {
+  }
+
+  @Override
+  public long getFilePointer() {
+    return position;
+  }
+
+  public boolean exists() {
+    return true;
+  }
+
+  @Override
+  public long length() {
+    return length;
+  }
+
+  @Override
+  public ByteOrder getOrder() {
+    return order;
+  }
+
+  @Override
+  public void setOrder(ByteOrder order) {
+    this.order = order;
+    for (ByteBuffer segment : segments) {
+      segment.order(order);
+    }
+  }
+
+  @Override
+  public int read(byte[] b) throws IOException {
+    return read(b, 0, b.length);
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (position >= length) {
+      return -1;
+    }
+    int n = (int) Math.min(len, length - position);
+    int done = 0;
+    while (done < n) {
+      ByteBuffer segment = segment(position);
+      int count = Math.min(n - done, segment.remaining());
+      segment.get(b, off + done, count);
+      position += count;
+      done += count;
+    }
+    return n;
+  }
+
+  @Override
+  public int read(ByteBuffer buffer) throws IOException {
+    return read(buffer, buffer.position(), buffer.remaining());
+  }
+
+  @Override
+  public int read(ByteBuffer buffer, int offset, int len) throws IOException {
+    if (position >= length) {
+      return -1;
+    }
+    int n = (int) Math.min(len, length - position);
+    buffer.position(offset);
+    int done = 0;
+    while (done < n) {
+      ByteBuffer segment = segment(position);
+      int count = Math.min(n - done, segment.remaining());
+      ByteBuffer slice = segment.slice();
+      slice.limit(count);
+      buffer.put(slice);
+      position += count;
+      done += count;
+    }
+    return n;
+  }
+
+  @Override
+  public void seek(long pos) throws IOException {
+    if (pos < 0) {
+      throw new IOException("Negative seek offset: " + pos);
+    }
+    position = pos;
+  }
+
+  public void setLength(long newLength) throws IOException {
+    if (newLength > getCapacity()) {
+      grow(newLength);
+    }
+    setLengthInternal(newLength);
+  }
+
+  public long skipBytes(long n) throws IOException {
+    long skip = Math.max(0, Math.min(n, length - position));
+    position += skip;
+    return skip;
+  }
+
+  @Override
+  public void write(ByteBuffer buf) throws IOException {
+    write(buf, buf.position(), buf.remaining());
+  }
+
+  @Override
+  public void write(ByteBuffer buf, int off, int len) throws IOException {
+    ensureWritable(position + len);
+    ByteBuffer src = buf.duplicate();
+    src.position(off);
+    int done = 0;
+    while (done < len) {
+      ByteBuffer segment = segment(position);
+      int count = Math.min(len - done, segment.remaining());
+      src.limit(off + done + count);
+      segment.put(src);
+      position += count;
+      done += count;
+    }
+  }
+
+  // -- DataInput API --
+
+  @Override
+  public void readFully(byte[] b) throws IOException {
+    readFully(b, 0, b.length);
+  }
+
+  @Override
+  public void readFully(byte[] b, int off, int len) throws IOException {
+    checkAvailable(len);
+    read(b, off, len);
+  }
+
+  @Override
+  public int skipBytes(int n) throws IOException {
+    return (int) skipBytes((long) n);
+  }
+
+  @Override
+  public boolean readBoolean() throws IOException {
+    return readByte() != 0;
+  }
+
+  @Override
+  public byte readByte() throws IOException {
+    checkAvailable(1);
+    byte value = segment(position).get();
+    position++;
+    return value;
+  }
+
+  @Override
+  public int readUnsignedByte() throws IOException {
+    return readByte() & 0xff;
+  }
+
+  @Override
+  public short readShort() throws IOException {
+    checkAvailable(2);
+    if (inOneSegment(2)) {
+      short value = segment(position).getShort();
+      position += 2;
+      return value;
+    }
+    readScratch(2);
+    return (short) scratchValue(2);
+  }
+
+  @Override
+  public int readUnsignedShort() throws IOException {
+    return readShort() & 0xffff;
+  }
+
+  @Override
+  public char readChar() throws IOException {
+    return (char) readShort();
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    checkAvailable(4);
+    if (inOneSegment(4)) {
+      int value = segment(position).getInt();
+      position += 4;
+      return value;
+    }
+    readScratch(4);
+    return (int) scratchValue(4);
+  }
+
+  @Override
+  public long readLong() throws IOException {
+    checkAvailable(8);
+    if (inOneSegment(8)) {
+      long value = segment(position).getLong();
+      position += 8;
+      return value;
+    }
+    readScratch(8);
+    return scratchValue(8);
+  }
+
+  @Override
+  public float readFloat() throws IOException {
+    return Float.intBitsToFloat(readInt());
+  }
+
+  @Override
+  public double readDouble() throws IOException {
+    return Double.longBitsToDouble(readLong());
+  }
+
+  @Override
+  public String readLine() throws IOException {
+    if (position >= length) {
+      return null;
+    }
+    StringBuilder line = new StringBuilder();
+    while (position < length) {
+      int c = readUnsignedByte();
+      if (c == '\n') {
+        break;
+      }
+      if (c == '\r') {
+        if (position < length && segment(position).get() != '\n') {
+          break;
+        }
+        position = Math.min(position + 1, length);
+        break;
+      }
+      line.append((char) c);
+    }
+    return line.toString();
+  }
+
+  @Override
+  public String readUTF() throws IOException {
+    return DataInputStream.readUTF(this);
+  }
+
+  // -- DataOutput API --
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureWritable(position + 1);
+    segment(position).put((byte) b);
+    position++;
+  }
+
+  @Override
+  public void write(byte[] b) throws IOException {
+    write(b, 0, b.length);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    ensureWritable(position + len);
+    int done = 0;
+    while (done < len) {
+      ByteBuffer segment = segment(position);
+      int count = Math.min(len - done, segment.remaining());
+      segment.put(b, off + done, count);
+      position += count;
+      done += count;
+    }
+  }
+
+  @Override
+  public void writeBoolean(boolean v) throws IOException {
+    write(v ? 1 : 0);
+  }
+
+  @Override
+  public void writeByte(int v) throws IOException {
+    write(v);
+  }
+
+  @Override
+  public void writeShort(int v) throws IOException {
+    writeScratch(v, 2);
+  }
+
+  @Override
+  public void writeChar(int v) throws IOException {
+    writeScratch(v, 2);
+  }
+
+  @Override
+  public void writeInt(int v) throws IOException {
+    writeScratch(v, 4);
+  }
+
+  @Override
+  public void writeLong(long v) throws IOException {
+    writeScratch(v, 8);
+  }
+
+  @Override
+  public void writeFloat(float v) throws IOException {
+    writeInt(Float.floatToIntBits(v));
+  }
+
+  @Override
+  public void writeDouble(double v) throws IOException {
+    writeLong(Double.doubleToLongBits(v));
+  }
+
+  @Override
+  public void writeBytes(String s) throws IOException {
+    for (int i=0; i<s.length(); i++) {
+      write(s.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeChars(String s) throws IOException {
+    for (int i=0; i<s.length(); i++) {
+      writeChar(s.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeUTF(String s) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(s.length() + 2);
+    new DataOutputStream(bytes).writeUTF(s);
+    write(bytes.toByteArray());
+  }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A growable output handle that stores its data as a list of fixed size
+ * chunks. Growing appends a chunk instead of reallocating and copying, and
+ * {@link #flushTo(File)} writes the chunks straight to disk with a
+ * gathering {@link FileChannel#write}, so the data is never assembled into
+ * a single array.
+ *
+ * Chunks are heap buffers by default, or direct buffers to keep the data
+ * off the heap. Once the handle grows past the spill threshold, its chunks
+ * are moved into a temporary file and every further chunk is a mapped
+ * region of that file.
+ *
+ * Since {@link #close()} must leave the data in place (see
+ * {@link SegmentedHandle#close()}), call {@link #dispose()} once the data
+ * has been flushed to release the chunks and delete any spill file.
+ */
+public class SegmentedOutputHandle extends SegmentedHandle {
+
+  /** Default chunk size of 4 MB. */
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 22;
+
+  private final boolean direct;
+  private final long spillThreshold;
+
+  private File spillFile;
+  private FileChannel spillChannel;
+
+  /** Create a heap-backed handle that never spills. */
+  public SegmentedOutputHandle() {
+    this(DEFAULT_CHUNK_SIZE, false, 0);
+  }
+
+  /**
+   * @param chunkSize the size of each chunk; a power of two
+   * @param direct true if chunks should be allocated off the heap
+   * @param spillThreshold the size in bytes beyond which data is moved to a
+   *   temporary file, or 0 to always keep it in memory
+   */
+  public SegmentedOutputHandle(int chunkSize, boolean direct,
+    long spillThreshold)
+  {
+    super(chunkSize);
+    this.direct = direct;
+    this.spillThreshold = spillThreshold;
+  }
+
+  /** @return true if the data has been moved to a temporary file */
+  public boolean isSpilled() {
+    return spillChannel != null;
+  }
+
+  /**
+   * Write the contents of this handle to the given file, replacing it.
+   *
+   * @param file the destination file
+   * @throws IOException if the file cannot be written
+   */
+  public void flushTo(File file) throws IOException {
+    List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+    long remaining = length();
+    for (ByteBuffer segment : getSegments()) {
+      if (remaining <= 0) {
+        break;
+      }
+      ByteBuffer chunk = segment.duplicate();
+      chunk.clear();
+      chunk.limit((int) Math.min(chunk.capacity(), remaining));
+      remaining -= chunk.limit();
+      chunks.add(chunk);
+    }
+    ByteBuffer[] buffers = chunks.toArray(new ByteBuffer[chunks.size()]);
+    try (FileChannel out = FileChannel.open(file.toPath(),
+      StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+      StandardOpenOption.TRUNCATE_EXISTING))
+    {
+      long toWrite = length();
+      while (toWrite > 0) {
+        toWrite -= out.write(buffers);
+      }
+    }
+  }
+
+  /**
+   * Release all chunks and delete the spill file, if any. The handle is
+   * empty afterwards.
+   */
+  public void dispose() throws IOException {
+    clearSegments();
+    setLengthInternal(0);
+    if (spillChannel != null) {
+      spillChannel.close();
+      spillChannel = null;
+    }
+    if (spillFile != null) {
+      spillFile.delete();
+      spillFile = null;
+    }
+  }
+
+  @Override
+  protected void grow(long capacity) throws IOException {
+    if (!isSpilled() && spillThreshold > 0 && capacity > spillThreshold) {
+      spill();
+    }
+    int chunkSize = getSegmentSize();
+    while (getCapacity() < capacity) {
+      if (isSpilled()) {
+        // mapping past the end of the file extends it
+        addSegment(spillChannel.map(FileChannel.MapMode.READ_WRITE,
+          getCapacity(), chunkSize));
+      }
+      else if (direct) {
+        addSegment(ByteBuffer.allocateDirect(chunkSize));
+      }
+      else {
+        addSegment(ByteBuffer.allocate(chunkSize));
+      }
+    }
+  }
+
+  /** Move the existing chunks into a temporary file and map them back. */
+  private void spill() throws IOException {
+    spillFile = File.createTempFile("segmented", ".spill");
+    spillFile.deleteOnExit();
+    spillChannel = FileChannel.open(spillFile.toPath(),
+      StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+    List<ByteBuffer> chunks = new ArrayList<ByteBuffer>(getSegments());
+    clearSegments();
+    long offset = 0;
+    for (ByteBuffer chunk : chunks) {
+      ByteBuffer data = chunk.duplicate();
+      data.clear();
+      while (data.hasRemaining()) {
+        spillChannel.write(data, offset + data.position());
+      }
+      addSegment(spillChannel.map(FileChannel.MapMode.READ_WRITE,
+        offset, chunk.capacity()));
+      offset += chunk.capacity();
+    }
+  }
+
+}
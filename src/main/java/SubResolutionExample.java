@@ -78,6 +78,14 @@ public class SubResolutionExample {
         System.out.println("      Resolution #" + r + " dimensions = " +
           reader.getSizeX() + " x " + reader.getSizeY());
       }
+
+      // a thumbnail of the whole series only needs the smallest level
+      // that is at least as large as the thumbnail
+      reader.setResolution(0);
+      ViewportReader.Viewport overview = new ViewportReader(reader).locate(
+        series, 0, 0, reader.getSizeX(), reader.getSizeY(), 128, 128);
+      System.out.println("      128 x 128 overview reads resolution #" +
+        overview.resolution);
     }
 
     reader.close();
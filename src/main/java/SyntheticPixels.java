@@ -0,0 +1,355 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import loci.formats.FormatTools;
+
+/**
+ * Fast, reproducible synthetic pixel data for exercising writers.
+ *
+ * Every plane is generated from the seed and the plane number alone, so
+ * planes can be filled in any order, on any number of threads, and still
+ * come out identical from run to run. Random values come from an inline
+ * xorshift64* generator seeded per plane with SplitMix64; uniformly random
+ * integer planes are filled eight bytes at a time. Each row of a patterned
+ * plane is a window into one precomputed run of samples, so noise-free
+ * planes are filled by copying rows, and noisy samples are stored as whole
+ * words.
+ *
+ * The compressibility setting controls how much of each sample is random:
+ * the high bits follow the pattern and the low (1 - compressibility) of the
+ * bits are noise. A compressibility of 0 gives incompressible noise and 1
+ * gives the bare pattern. Floating point samples lie in [0, 1).
+ *
+ * All FormatTools pixel types are supported, in either byte order.
+ */
+public class SyntheticPixels {
+
+  /** The structure underlying each plane. */
+  public enum Pattern {
+    /** No structure; with compressibility 0 every bit is random. */
+    RANDOM,
+    /** A diagonal ramp over the full range, shifted by one per plane. */
+    GRADIENT,
+    /** 32 pixel squares at one and three quarters of the range. */
+    CHECKERBOARD
+  }
+
+  private static final int CHECKER_SIZE = 32;
+
+  private final int width;
+  private final int height;
+  private final int pixelType;
+  private final int bpp;
+  private final int bits;
+
+  private long seed;
+  private Pattern pattern = Pattern.RANDOM;
+  private double compressibility;
+  private boolean littleEndian;
+
+  /**
+   * @param width the width of each plane in pixels
+   * @param height the height of each plane in pixels
+   * @param pixelType the pixel type; @see loci.formats.FormatTools
+   */
+  public SyntheticPixels(int width, int height, int pixelType) {
+    this.width = width;
+    this.height = height;
+    this.pixelType = pixelType;
+    this.bpp = FormatTools.getBytesPerPixel(pixelType);
+    switch (pixelType) {
+      case FormatTools.BIT:
+        bits = 1;
+        break;
+      case FormatTools.FLOAT:
+        bits = 24;
+        break;
+      case FormatTools.DOUBLE:
+        bits = 53;
+        break;
+      default:
+        bits = 8 * bpp;
+    }
+    if ((long) width * height * bpp > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Planes of " + width + " x " +
+        height + " pixels are too large");
+    }
+  }
+
+  /** @param seed the seed from which every plane is derived */
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /** @param pattern the structure underlying each plane */
+  public void setPattern(Pattern pattern) {
+    this.pattern = pattern;
+  }
+
+  /**
+   * @param compressibility the fraction of each sample's bits that follow
+   *   the pattern rather than being random, from 0 to 1
+   */
+  public void setCompressibility(double compressibility) {
+    if (compressibility < 0 || compressibility > 1) {
+      throw new IllegalArgumentException(
+        "Compressibility must be between 0 and 1");
+    }
+    this.compressibility = compressibility;
+  }
+
+  /** @param littleEndian true to store samples least significant byte first */
+  public void setLittleEndian(boolean littleEndian) {
+    this.littleEndian = littleEndian;
+  }
+
+  /** @return the size of one plane in bytes */
+  public int getPlaneSize() {
+    return width * height * bpp;
+  }
+
+  /**
+   * @param no the plane number
+   * @return a new buffer holding the plane
+   */
+  public byte[] createPlane(int no) {
+    byte[] buf = new byte[getPlaneSize()];
+    fillPlane(no, buf);
+    return buf;
+  }
+
+  /**
+   * Fill a buffer with one plane. Safe to call from several threads at
+   * once with different buffers.
+   *
+   * @param no the plane number
+   * @param buf the buffer to fill, at least {@link #getPlaneSize()} bytes
+   */
+  public void fillPlane(int no, byte[] buf) {
+    int size = getPlaneSize();
+    if (buf.length < size) {
+      throw new IllegalArgumentException("Buffer of " + buf.length +
+        " bytes cannot hold a plane of " + size + " bytes");
+    }
+    long state = seedFor(no);
+    int noiseBits = (int) Math.round((1 - compressibility) * bits);
+
+    boolean integer = pixelType != FormatTools.FLOAT &&
+      pixelType != FormatTools.DOUBLE && pixelType != FormatTools.BIT;
+    if (pattern == Pattern.RANDOM && noiseBits == bits && integer) {
+      // every bit is random, so the samples' layout does not matter
+      fillRandom(buf, size, state);
+      return;
+    }
+
+    long[] values = getPatternValues(no);
+    int rowBytes = width * bpp;
+    ByteBuffer out = ByteBuffer.wrap(buf).order(
+      littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+
+    if (noiseBits == 0) {
+      // every row is a window into the same run of encoded samples
+      byte[] encoded = new byte[values.length * bpp];
+      encode(values, values.length);
+      store(ByteBuffer.wrap(encoded).order(out.order()), 0, values,
+        values.length);
+      for (int y=0; y<height; y++) {
+        System.arraycopy(encoded, getRowStart(y, no) * bpp, buf, y * rowBytes,
+          rowBytes);
+      }
+      return;
+    }
+
+    long noiseMask = (1L << noiseBits) - 1;
+    for (int i=0; i<values.length; i++) {
+      values[i] &= ~noiseMask;
+    }
+    long[] row = new long[width];
+    for (int y=0; y<height; y++) {
+      int start = getRowStart(y, no);
+      for (int x=0; x<width; x++) {
+        state ^= state >>> 12;
+        state ^= state << 25;
+        state ^= state >>> 27;
+        long random = (state * 0x2545F4914F6CDD1DL) >>> (64 - noiseBits);
+        row[x] = values[start + x] | random;
+      }
+      encode(row, width);
+      store(out, y * rowBytes, row, width);
+    }
+  }
+
+  /**
+   * Compute the pattern's samples as one run from which every row of the
+   * plane is a window of width samples; @see #getRowStart(int, int).
+   *
+   * @param no the plane number
+   * @return the unsigned samples of the pattern
+   */
+  private long[] getPatternValues(int no) {
+    long max = (1L << bits) - 1;
+    switch (pattern) {
+      case GRADIENT: {
+        // a ramp repeating every 'period' samples
+        int period = Math.max(1, width + height - 2) + 1;
+        double scale = (double) max / (period - 1);
+        long[] values = new long[period + width];
+        for (int i=0; i<values.length; i++) {
+          values[i] = (long) ((i % period) * scale);
+        }
+        return values;
+      }
+      case CHECKERBOARD: {
+        // squares alternating every CHECKER_SIZE samples
+        long low = max / 4;
+        long high = max - low;
+        long[] values = new long[CHECKER_SIZE + width];
+        for (int i=0; i<values.length; i++) {
+          values[i] = ((i / CHECKER_SIZE) & 1) == 0 ? low : high;
+        }
+        return values;
+      }
+      default:
+        return new long[width];
+    }
+  }
+
+  /**
+   * @param y the row
+   * @param no the plane number
+   * @return the index of the row's first sample in the pattern's samples
+   */
+  private int getRowStart(int y, int no) {
+    switch (pattern) {
+      case GRADIENT:
+        return (int) ((y + (long) no) % (Math.max(1, width + height - 2) + 1));
+      case CHECKERBOARD:
+        return ((y / CHECKER_SIZE + no) & 1) * CHECKER_SIZE;
+      default:
+        return 0;
+    }
+  }
+
+  /** Convert unsigned samples of 'bits' bits to their stored form. */
+  private void encode(long[] values, int count) {
+    switch (pixelType) {
+      case FormatTools.INT8:
+      case FormatTools.INT16:
+      case FormatTools.INT32:
+        // keep the pattern's ordering when read as signed values
+        long sign = 1L << (bits - 1);
+        for (int i=0; i<count; i++) {
+          values[i] ^= sign;
+        }
+        break;
+      case FormatTools.FLOAT:
+        for (int i=0; i<count; i++) {
+          values[i] = Float.floatToIntBits(values[i] / (float) (1 << 24));
+        }
+        break;
+      case FormatTools.DOUBLE:
+        for (int i=0; i<count; i++) {
+          values[i] =
+            Double.doubleToLongBits(values[i] / (double) (1L << 53));
+        }
+        break;
+      default:
+    }
+  }
+
+  /** Write the low bpp bytes of each sample as whole words. */
+  private void store(ByteBuffer out, int offset, long[] values, int count) {
+    switch (bpp) {
+      case 1:
+        for (int i=0; i<count; i++) {
+          out.put(offset + i, (byte) values[i]);
+        }
+        break;
+      case 2:
+        for (int i=0; i<count; i++) {
+          out.putShort(offset + 2 * i, (short) values[i]);
+        }
+        break;
+      case 4:
+        for (int i=0; i<count; i++) {
+          out.putInt(offset + 4 * i, (int) values[i]);
+        }
+        break;
+      default:
+        for (int i=0; i<count; i++) {
+          out.putLong(offset + 8 * i, values[i]);
+        }
+    }
+  }
+
+  /** Fill the first size bytes with random bits, eight at a time. */
+  private static void fillRandom(byte[] buf, int size, long state) {
+    int i = 0;
+    for (; i + 8 <= size; i += 8) {
+      state ^= state >>> 12;
+      state ^= state << 25;
+      state ^= state >>> 27;
+      long r = state * 0x2545F4914F6CDD1DL;
+      buf[i] = (byte) r;
+      buf[i + 1] = (byte) (r >>> 8);
+      buf[i + 2] = (byte) (r >>> 16);
+      buf[i + 3] = (byte) (r >>> 24);
+      buf[i + 4] = (byte) (r >>> 32);
+      buf[i + 5] = (byte) (r >>> 40);
+      buf[i + 6] = (byte) (r >>> 48);
+      buf[i + 7] = (byte) (r >>> 56);
+    }
+    if (i < size) {
+      state ^= state >>> 12;
+      state ^= state << 25;
+      state ^= state >>> 27;
+      long r = state * 0x2545F4914F6CDD1DL;
+      for (; i < size; i++, r >>>= 8) {
+        buf[i] = (byte) r;
+      }
+    }
+  }
+
+  /** @return a non-zero generator state derived from the seed and plane */
+  private long seedFor(int no) {
+    long z = seed + (no + 1L) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    z ^= z >>> 31;
+    return z == 0 ? 0x9E3779B97F4A7C15L : z;
+  }
+
+}
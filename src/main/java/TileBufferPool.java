@@ -0,0 +1,159 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * A pool of reusable tile buffers for tiled reading and writing.
+ *
+ * Buffers are keyed by their exact length, so a plane split into tiles that
+ * do not divide its width and height evenly uses at most four buffers: one
+ * for full tiles, one each for the last column and last row, and one for
+ * the bottom-right corner. Once those buffers exist no further allocation
+ * takes place; the few lengths are looked up in a small table rather than a
+ * map, so that a request does not even box its size.
+ *
+ * A buffer returned by {@link #get(int)} is handed out again on the next
+ * request of the same size. When several tiles of the same size are in
+ * flight at once, use {@link #acquire(int)} and {@link #release(byte[])}
+ * instead. In either case the pool itself must only be used by one thread.
+ */
+public class TileBufferPool {
+
+  /** The buffers of each length requested so far. */
+  private Slot[] slots = new Slot[4];
+
+  /** The number of slots in use. */
+  private int slotCount;
+
+  /** The number of buffers requested from the pool. */
+  private long requests;
+
+  /** The number of buffers allocated by the pool. */
+  private long allocations;
+
+  /**
+   * Retrieve a buffer of exactly the given length, allocating it only if
+   * no buffer of that length has been requested before.
+   *
+   * @param size the number of bytes required
+   * @return a buffer of the requested length
+   */
+  public byte[] get(int size) {
+    requests++;
+    Slot slot = getSlot(size);
+    if (slot.shared == null) {
+      slot.shared = new byte[size];
+      allocations++;
+    }
+    return slot.shared;
+  }
+
+  /**
+   * Check out a buffer of exactly the given length. The buffer is not handed
+   * out again until it is passed to {@link #release(byte[])}.
+   *
+   * @param size the number of bytes required
+   * @return a buffer of the requested length
+   */
+  public byte[] acquire(int size) {
+    requests++;
+    Slot slot = getSlot(size);
+    if (slot.freeCount > 0) {
+      byte[] buf = slot.free[--slot.freeCount];
+      slot.free[slot.freeCount] = null;
+      return buf;
+    }
+    allocations++;
+    return new byte[size];
+  }
+
+  /**
+   * Return a buffer obtained from {@link #acquire(int)} to the pool.
+   *
+   * @param buf the buffer which is no longer in use
+   */
+  public void release(byte[] buf) {
+    Slot slot = getSlot(buf.length);
+    if (slot.freeCount == slot.free.length) {
+      slot.free = Arrays.copyOf(slot.free, 2 * slot.free.length);
+    }
+    slot.free[slot.freeCount++] = buf;
+  }
+
+  /** @return the slot for buffers of the given length, added if needed */
+  private Slot getSlot(int size) {
+    for (int i=0; i<slotCount; i++) {
+      if (slots[i].size == size) {
+        return slots[i];
+      }
+    }
+    if (slotCount == slots.length) {
+      slots = Arrays.copyOf(slots, 2 * slots.length);
+    }
+    Slot slot = new Slot(size);
+    slots[slotCount++] = slot;
+    return slot;
+  }
+
+  /** @return the number of buffers requested from the pool */
+  public long getRequestCount() {
+    return requests;
+  }
+
+  /** @return the number of buffers the pool had to allocate */
+  public long getAllocationCount() {
+    return allocations;
+  }
+
+  @Override
+  public String toString() {
+    return requests + " tile buffers requested, " + allocations + " allocated";
+  }
+
+  /** The buffers of one length. */
+  private static class Slot {
+    final int size;
+
+    /** The buffer handed out by {@link TileBufferPool#get(int)}. */
+    byte[] shared;
+
+    /** Released buffers available to {@link TileBufferPool#acquire(int)}. */
+    byte[][] free = new byte[4][];
+    int freeCount;
+
+    Slot(int size) {
+      this.size = size;
+    }
+  }
+
+}
@@ -0,0 +1,473 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.ImageReader;
+
+/**
+ * A cache of decoded tiles held outside the Java heap, shared by any
+ * number of readers.
+ *
+ * Tiles are keyed by file, core index, plane and region. Their
+ * bytes are copied into fixed size blocks carved out of direct buffers, so
+ * the cache adds almost nothing to the heap however large its budget is;
+ * a tile occupies as many blocks as it needs, and freed blocks are reused
+ * by later tiles. Direct buffers are allocated lazily as the cache fills,
+ * up to the byte budget given to the constructor.
+ *
+ * When the budget is exhausted, admission follows TinyLFU: a count-min
+ * sketch estimates how often every key has been requested recently, and a
+ * new tile only replaces the least recently used tiles if it has been
+ * requested more often than each of them. A scan over tiles that are read
+ * once therefore cannot flush tiles that are read repeatedly. The sketch
+ * counters are halved periodically so that old popularity fades.
+ *
+ * Cached tiles are assumed not to change; files that are rewritten must
+ * use a different id or a new cache.
+ *
+ * To read every tile of a file twice through two readers sharing a cache:
+ *
+ * $ java TileCache input-file [budget-bytes] [tile-size]
+ */
+public class TileCache {
+
+  /** Default size of a storage block. */
+  public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+  /** Number of blocks in each direct buffer. */
+  private static final int BLOCKS_PER_SEGMENT = 256;
+
+  /**
+   * Identifies one decoded region of one plane. Images are identified by
+   * their core index rather than by series and resolution, which differ
+   * between flattened and unflattened readers of the same pyramid.
+   */
+  public static final class Key {
+    private final String file;
+    private final int coreIndex;
+    private final int plane;
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+    private final int hash;
+
+    public Key(String file, int coreIndex, int plane,
+      int x, int y, int width, int height)
+    {
+      this.file = file;
+      this.coreIndex = coreIndex;
+      this.plane = plane;
+      this.x = x;
+      this.y = y;
+      this.width = width;
+      this.height = height;
+      int h = file.hashCode();
+      h = 31 * h + coreIndex;
+      h = 31 * h + plane;
+      h = 31 * h + x;
+      h = 31 * h + y;
+      h = 31 * h + width;
+      h = 31 * h + height;
+      hash = h;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key k = (Key) o;
+      return hash == k.hash && coreIndex == k.coreIndex &&
+        plane == k.plane && x == k.x &&
+        y == k.y && width == k.width && height == k.height &&
+        file.equals(k.file);
+    }
+
+    @Override
+    public String toString() {
+      return file + " [core index " + coreIndex +
+        ", plane " + plane + ", " + width + " x " + height + " at (" + x +
+        ", " + y + ")]";
+    }
+  }
+
+  /** The blocks holding one tile. */
+  private static final class Entry {
+    final int[] blocks;
+    final int length;
+
+    Entry(int[] blocks, int length) {
+      this.blocks = blocks;
+      this.length = length;
+    }
+  }
+
+  /**
+   * A count-min sketch of 4 rows of saturating 4 bit counters, stored one
+   * counter per byte.
+   */
+  private static final class FrequencySketch {
+    private static final int ROWS = 4;
+    private static final int MAX_COUNT = 15;
+
+    private final byte[][] counts;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+      int width = Integer.highestOneBit(
+        Math.max(64, Math.min(expectedEntries, 1 << 24)) - 1) << 1;
+      counts = new byte[ROWS][width];
+      mask = width - 1;
+      sampleSize = 10 * width;
+    }
+
+    int frequency(Object key) {
+      int hash = key.hashCode();
+      int min = MAX_COUNT;
+      for (int row=0; row<ROWS; row++) {
+        min = Math.min(min, counts[row][index(hash, row)]);
+      }
+      return min;
+    }
+
+    void increment(Object key) {
+      int hash = key.hashCode();
+      boolean added = false;
+      for (int row=0; row<ROWS; row++) {
+        int i = index(hash, row);
+        if (counts[row][i] < MAX_COUNT) {
+          counts[row][i]++;
+          added = true;
+        }
+      }
+      if (added && ++additions >= sampleSize) {
+        // age every counter so that past popularity decays
+        for (byte[] row : counts) {
+          for (int i=0; i<row.length; i++) {
+            row[i] >>= 1;
+          }
+        }
+        additions /= 2;
+      }
+    }
+
+    private int index(int hash, int row) {
+      // murmur3 finalizer with a different seed per row
+      int h = hash + row * 0x9E3779B9;
+      h ^= h >>> 16;
+      h *= 0x85EBCA6B;
+      h ^= h >>> 13;
+      h *= 0xC2B2AE35;
+      h ^= h >>> 16;
+      return h & mask;
+    }
+  }
+
+  private final long budget;
+  private final int blockSize;
+  private final int totalBlocks;
+
+  private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+  private int allocatedBlocks;
+  private final int[] freeBlocks;
+  private int freeCount;
+
+  /** Cached tiles, least recently used first. */
+  private final LinkedHashMap<Key, Entry> entries =
+    new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+  private final FrequencySketch sketch;
+
+  private long bytesUsed;
+  private long hits;
+  private long misses;
+  private long admissions;
+  private long rejections;
+  private long evictions;
+
+  /**
+   * @param budget the maximum number of bytes of tile data to keep
+   */
+  public TileCache(long budget) {
+    this(budget, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * @param budget the maximum number of bytes of tile data to keep
+   * @param blockSize the unit in which storage is handed out to tiles
+   */
+  public TileCache(long budget, int blockSize) {
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("Block size must be positive");
+    }
+    long blocks = budget / blockSize;
+    if (blocks < 1 || blocks > Integer.MAX_VALUE - BLOCKS_PER_SEGMENT) {
+      throw new IllegalArgumentException("Invalid budget " + budget +
+        " for block size " + blockSize);
+    }
+    this.blockSize = blockSize;
+    this.totalBlocks = (int) blocks;
+    this.budget = blocks * blockSize;
+    freeBlocks = new int[totalBlocks];
+    sketch = new FrequencySketch(totalBlocks);
+  }
+
+  /**
+   * Look up a tile and copy it into the given buffer.
+   *
+   * @param key the tile to look up
+   * @param buf the buffer to copy into; a new one is allocated if it is
+   *   null or too small
+   * @return the buffer holding the tile, or null if it is not cached
+   */
+  public synchronized byte[] get(Key key, byte[] buf) {
+    sketch.increment(key);
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    if (buf == null || buf.length < entry.length) {
+      buf = new byte[entry.length];
+    }
+    int offset = 0;
+    for (int block : entry.blocks) {
+      int n = Math.min(blockSize, entry.length - offset);
+      ByteBuffer segment = locate(block);
+      segment.get(buf, offset, n);
+      offset += n;
+    }
+    return buf;
+  }
+
+  /**
+   * Offer a decoded tile to the cache. If the budget is exhausted, the tile
+   * is only stored if it has been requested more often than each of the
+   * tiles it would displace.
+   *
+   * @param key the tile
+   * @param buf the buffer holding the tile
+   * @param offset the offset of the tile within the buffer
+   * @param length the size of the tile in bytes
+   * @return true if the tile is now cached
+   */
+  public synchronized boolean put(Key key, byte[] buf, int offset, int length) {
+    if (entries.containsKey(key)) {
+      return true;
+    }
+    int needed = (int) ((length + (long) blockSize - 1) / blockSize);
+    if (length <= 0 || needed > totalBlocks) {
+      rejections++;
+      return false;
+    }
+
+    int available = freeCount + totalBlocks - allocatedBlocks;
+    if (available < needed) {
+      int frequency = sketch.frequency(key);
+      List<Key> victims = new ArrayList<Key>();
+      Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+      while (available < needed) {
+        Map.Entry<Key, Entry> victim = it.next();
+        if (sketch.frequency(victim.getKey()) >= frequency) {
+          rejections++;
+          return false;
+        }
+        victims.add(victim.getKey());
+        available += victim.getValue().blocks.length;
+      }
+      for (Key victim : victims) {
+        Entry evicted = entries.remove(victim);
+        for (int block : evicted.blocks) {
+          freeBlocks[freeCount++] = block;
+        }
+        bytesUsed -= evicted.length;
+        evictions++;
+      }
+    }
+
+    int[] blocks = new int[needed];
+    int copied = 0;
+    for (int i=0; i<needed; i++) {
+      blocks[i] = allocateBlock();
+      int n = Math.min(blockSize, length - copied);
+      ByteBuffer segment = locate(blocks[i]);
+      segment.put(buf, offset + copied, n);
+      copied += n;
+    }
+    entries.put(key, new Entry(blocks, length));
+    bytesUsed += length;
+    admissions++;
+    return true;
+  }
+
+  /** Remove every tile; direct buffers already allocated are kept. */
+  public synchronized void clear() {
+    for (Entry entry : entries.values()) {
+      for (int block : entry.blocks) {
+        freeBlocks[freeCount++] = block;
+      }
+    }
+    entries.clear();
+    bytesUsed = 0;
+  }
+
+  /** @return the maximum number of bytes of tile data kept */
+  public long getBudget() {
+    return budget;
+  }
+
+  /** @return the number of bytes of tile data currently cached */
+  public synchronized long getBytesUsed() {
+    return bytesUsed;
+  }
+
+  /** @return the number of tiles currently cached */
+  public synchronized int getTileCount() {
+    return entries.size();
+  }
+
+  /** @return the number of lookups that found their tile */
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  /** @return the number of lookups that did not find their tile */
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  /** @return the fraction of lookups that found their tile */
+  public synchronized double getHitRate() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  /** @return the number of tiles removed to make room for others */
+  public synchronized long getEvictionCount() {
+    return evictions;
+  }
+
+  /** @return the number of tiles that were offered but not stored */
+  public synchronized long getRejectionCount() {
+    return rejections;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return hits + " hits, " + misses + " misses (" +
+      String.format("%.1f", 100 * getHitRate()) + "% hit rate), " +
+      admissions + " admitted, " + rejections + " rejected, " + evictions +
+      " evicted; " + entries.size() + " tiles, " + bytesUsed + " of " +
+      budget + " bytes";
+  }
+
+  /** Take a free block, carving a new segment if needed. */
+  private int allocateBlock() {
+    if (freeCount > 0) {
+      return freeBlocks[--freeCount];
+    }
+    if (allocatedBlocks % BLOCKS_PER_SEGMENT == 0) {
+      int blocks = Math.min(BLOCKS_PER_SEGMENT, totalBlocks - allocatedBlocks);
+      segments.add(ByteBuffer.allocateDirect(blocks * blockSize));
+    }
+    return allocatedBlocks++;
+  }
+
+  /** @return the segment holding a block, positioned at its start */
+  private ByteBuffer locate(int block) {
+    ByteBuffer segment = segments.get(block / BLOCKS_PER_SEGMENT);
+    segment.clear();
+    segment.position((block % BLOCKS_PER_SEGMENT) * blockSize);
+    return segment;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("Usage: java TileCache input-file " +
+        "[budget-bytes] [tile-size]");
+      System.exit(1);
+    }
+    String id = args[0];
+    long budget = args.length > 1 ? Long.parseLong(args[1]) : 64L << 20;
+    int tileSize = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+
+    TileCache cache = new TileCache(budget);
+    for (int pass=0; pass<2; pass++) {
+      IFormatReader reader = new CachingReader(new ImageReader(), cache);
+      reader.setId(id);
+      try {
+        long start = System.nanoTime();
+        long bytes = 0;
+        for (int s=0; s<reader.getSeriesCount(); s++) {
+          reader.setSeries(s);
+          byte[] buf = new byte[FormatTools.getPlaneSize(reader,
+            Math.min(tileSize, reader.getSizeX()),
+            Math.min(tileSize, reader.getSizeY()))];
+          for (int no=0; no<reader.getImageCount(); no++) {
+            for (int y=0; y<reader.getSizeY(); y+=tileSize) {
+              for (int x=0; x<reader.getSizeX(); x+=tileSize) {
+                int w = Math.min(tileSize, reader.getSizeX() - x);
+                int h = Math.min(tileSize, reader.getSizeY() - y);
+                reader.openBytes(no, buf, x, y, w, h);
+                bytes += FormatTools.getPlaneSize(reader, w, h);
+              }
+            }
+          }
+        }
+        System.out.println("Pass " + (pass + 1) + ": read " + bytes +
+          " bytes in " + (System.nanoTime() - start) / 1000000 + " ms");
+      }
+      finally {
+        reader.close();
+      }
+    }
+    System.out.println(cache);
+  }
+
+}
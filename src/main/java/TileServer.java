@@ -0,0 +1,583 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+
+/**
+ * Serves the tiles of one file over HTTP on the loopback interface.
+ *
+ * A tile is requested as /{series}/{level}/{z}/{c}/{t}/{col}/{row}, where
+ * level is a sub-resolution index as in SubResolutionExample and col and
+ * row count tiles of the server's tile size from the top left corner. The
+ * response body holds the pixels exactly as openBytes returns them; the
+ * X-Tile-Width, X-Tile-Height, X-Pixel-Type and X-Interleaved headers
+ * describe the layout. Edge tiles are cropped to the image.
+ *
+ * Requests are handled concurrently on a fixed thread pool, with readers
+ * borrowed from a {@link ReaderPool}. Decoded tiles are kept in a least
+ * recently used cache, and concurrent requests for a tile that is being
+ * decoded wait for the same read. Every tile carries an ETag derived from
+ * the file's size and modification time, so a client revalidating a tile
+ * it already has gets a 304 without any decoding.
+ *
+ * To serve a file on port 8080:
+ *
+ * $ java TileServer input-file --port 8080
+ *
+ * To start a server on a free port, request random tiles from it and
+ * report latency percentiles:
+ *
+ * $ java TileServer input-file --port 0 --load 2000
+ */
+public class TileServer {
+
+  /** Default edge length of a tile. */
+  public static final int DEFAULT_TILE_SIZE = 256;
+
+  /** Default number of decoded tiles kept in memory. */
+  public static final int DEFAULT_CACHE_TILES = 1024;
+
+  /** A decoded tile and the headers describing it. */
+  private static class Tile {
+    final byte[] pixels;
+    final int width;
+    final int height;
+    final String pixelType;
+    final boolean interleaved;
+
+    Tile(byte[] pixels, int width, int height, String pixelType,
+      boolean interleaved)
+    {
+      this.pixels = pixels;
+      this.width = width;
+      this.height = height;
+      this.pixelType = pixelType;
+      this.interleaved = interleaved;
+    }
+  }
+
+  /** Thrown for requests that do not name a tile of the image. */
+  private static class NotFoundException extends Exception {
+    NotFoundException(String message) {
+      super(message);
+    }
+  }
+
+  private final String id;
+  private final int tileSize;
+  private final int threads;
+  private final String stamp;
+  private final ReaderPool readers;
+  private final Map<String, Tile> cache;
+  private final ConcurrentMap<String, FutureTask<Tile>> pending =
+    new ConcurrentHashMap<String, FutureTask<Tile>>();
+
+  private HttpServer server;
+  private ExecutorService executor;
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong notModified = new AtomicLong();
+
+  /**
+   * @param id the file to serve
+   * @param tileSize the edge length of a tile
+   * @param threads the number of requests handled at once
+   * @param cacheTiles the number of decoded tiles to keep
+   */
+  public TileServer(String id, int tileSize, int threads, final int cacheTiles) {
+    this.id = id;
+    this.tileSize = tileSize;
+    this.threads = threads;
+    File file = new File(id);
+    stamp = Long.toHexString(file.length()) + "-" +
+      Long.toHexString(file.lastModified()) + "-" + tileSize;
+    readers = new ReaderPool(threads, threads);
+    readers.setFlattenedResolutions(false);
+    cache = new LinkedHashMap<String, Tile>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Tile> eldest) {
+        return size() > cacheTiles;
+      }
+    };
+  }
+
+  /**
+   * Start serving on the loopback interface.
+   *
+   * @param port the port to listen on, or 0 for any free port
+   * @return the port the server is listening on
+   * @throws IOException if the port cannot be bound
+   */
+  public int start(int port) throws IOException {
+    server = HttpServer.create(
+      new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          serve(exchange);
+        }
+        finally {
+          exchange.close();
+        }
+      }
+    });
+    executor = Executors.newFixedThreadPool(threads);
+    server.setExecutor(executor);
+    server.start();
+    return server.getAddress().getPort();
+  }
+
+  /** Stop serving and close all pooled readers. */
+  public void stop() throws IOException {
+    if (server != null) {
+      server.stop(0);
+      executor.shutdown();
+      server = null;
+    }
+    readers.close();
+  }
+
+  private void serve(HttpExchange exchange) throws IOException {
+    requests.incrementAndGet();
+    String method = exchange.getRequestMethod();
+    boolean head = method.equals("HEAD");
+    if (!head && !method.equals("GET")) {
+      exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+      sendError(exchange, 405, "Method not allowed");
+      return;
+    }
+
+    int[] coordinates = parsePath(exchange.getRequestURI().getPath());
+    if (coordinates == null) {
+      sendError(exchange, 400,
+        "Expected /{series}/{level}/{z}/{c}/{t}/{col}/{row}");
+      return;
+    }
+    String key = coordinates[0] + "/" + coordinates[1] + "/" + coordinates[2] +
+      "/" + coordinates[3] + "/" + coordinates[4] + "/" + coordinates[5] +
+      "/" + coordinates[6];
+    String etag = "\"" + stamp + "-" + key.replace('/', '.') + "\"";
+    Headers responseHeaders = exchange.getResponseHeaders();
+    responseHeaders.set("ETag", etag);
+    responseHeaders.set("Cache-Control", "no-cache");
+
+    String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+    if (ifNoneMatch != null &&
+      (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(etag)))
+    {
+      notModified.incrementAndGet();
+      exchange.sendResponseHeaders(304, -1);
+      return;
+    }
+
+    Tile tile;
+    try {
+      tile = getTile(key, coordinates);
+    }
+    catch (NotFoundException e) {
+      responseHeaders.remove("ETag");
+      sendError(exchange, 404, e.getMessage());
+      return;
+    }
+    catch (FormatException | IOException e) {
+      System.err.println("Failed to read tile " + key + " of " + id);
+      e.printStackTrace();
+      responseHeaders.remove("ETag");
+      sendError(exchange, 500, "Failed to read tile");
+      return;
+    }
+
+    responseHeaders.set("Content-Type", "application/octet-stream");
+    responseHeaders.set("X-Tile-Width", String.valueOf(tile.width));
+    responseHeaders.set("X-Tile-Height", String.valueOf(tile.height));
+    responseHeaders.set("X-Pixel-Type", tile.pixelType);
+    responseHeaders.set("X-Interleaved", String.valueOf(tile.interleaved));
+    if (head) {
+      responseHeaders.set("Content-Length", String.valueOf(tile.pixels.length));
+      exchange.sendResponseHeaders(200, -1);
+      return;
+    }
+    exchange.sendResponseHeaders(200, tile.pixels.length);
+    try (OutputStream body = exchange.getResponseBody()) {
+      body.write(tile.pixels);
+    }
+  }
+
+  /**
+   * @return the seven non-negative path components, or null if the path
+   *   is not of the expected form
+   */
+  private static int[] parsePath(String path) {
+    String[] parts = path.split("/");
+    if (parts.length != 8 || !parts[0].isEmpty()) {
+      return null;
+    }
+    int[] values = new int[7];
+    try {
+      for (int i=0; i<values.length; i++) {
+        values[i] = Integer.parseInt(parts[i + 1]);
+        if (values[i] < 0) {
+          return null;
+        }
+      }
+    }
+    catch (NumberFormatException e) {
+      return null;
+    }
+    return values;
+  }
+
+  /**
+   * Return a tile from the cache, or decode it. A tile that is already being
+   * decoded for another request is waited for rather than read twice.
+   */
+  private Tile getTile(String key, final int[] coordinates)
+    throws NotFoundException, FormatException, IOException
+  {
+    Tile tile;
+    synchronized (cache) {
+      tile = cache.get(key);
+    }
+    if (tile != null) {
+      hits.incrementAndGet();
+      return tile;
+    }
+
+    FutureTask<Tile> task = new FutureTask<Tile>(() -> readTile(coordinates));
+    FutureTask<Tile> existing = pending.putIfAbsent(key, task);
+    if (existing == null) {
+      misses.incrementAndGet();
+      try {
+        task.run();
+        tile = waitFor(task);
+        synchronized (cache) {
+          cache.put(key, tile);
+        }
+        return tile;
+      }
+      finally {
+        pending.remove(key, task);
+      }
+    }
+    hits.incrementAndGet();
+    return waitFor(existing);
+  }
+
+  private Tile readTile(int[] coordinates)
+    throws NotFoundException, FormatException, IOException
+  {
+    int series = coordinates[0];
+    int level = coordinates[1];
+    int z = coordinates[2];
+    int c = coordinates[3];
+    int t = coordinates[4];
+    int col = coordinates[5];
+    int row = coordinates[6];
+
+    IFormatReader reader = readers.borrow(id);
+    try {
+      if (series >= reader.getSeriesCount()) {
+        throw new NotFoundException("No series " + series);
+      }
+      reader.setSeries(series);
+      if (level >= reader.getResolutionCount()) {
+        throw new NotFoundException("No resolution " + level + " in series " +
+          series);
+      }
+      reader.setResolution(level);
+      if (z >= reader.getSizeZ() || c >= reader.getEffectiveSizeC() ||
+        t >= reader.getSizeT())
+      {
+        throw new NotFoundException("No plane (" + z + ", " + c + ", " + t +
+          ") in series " + series);
+      }
+      int x = col * tileSize;
+      int y = row * tileSize;
+      if ((long) col * tileSize >= reader.getSizeX() ||
+        (long) row * tileSize >= reader.getSizeY())
+      {
+        throw new NotFoundException("No tile (" + col + ", " + row +
+          ") at resolution " + level);
+      }
+      int width = Math.min(tileSize, reader.getSizeX() - x);
+      int height = Math.min(tileSize, reader.getSizeY() - y);
+      byte[] pixels =
+        reader.openBytes(reader.getIndex(z, c, t), x, y, width, height);
+      return new Tile(pixels, width, height,
+        FormatTools.getPixelTypeString(reader.getPixelType()),
+        reader.isInterleaved());
+    }
+    finally {
+      readers.release(reader);
+    }
+  }
+
+  private static Tile waitFor(Future<Tile> future)
+    throws NotFoundException, FormatException, IOException
+  {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading tile");
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof NotFoundException) {
+        throw (NotFoundException) cause;
+      }
+      if (cause instanceof FormatException) {
+        throw (FormatException) cause;
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new FormatException(cause);
+    }
+  }
+
+  private static void sendError(HttpExchange exchange, int status,
+    String message) throws IOException
+  {
+    byte[] body = (message + "\n").getBytes("UTF-8");
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  @Override
+  public String toString() {
+    long cached;
+    synchronized (cache) {
+      cached = cache.size();
+    }
+    return requests + " requests, " + hits + " cache hits, " + misses +
+      " cache misses, " + notModified + " not modified, " + cached +
+      " tiles cached; readers: " + readers;
+  }
+
+  /**
+   * Request random tiles from a running server and report latency.
+   *
+   * Tiles are drawn from every series and resolution of the file, with
+   * most requests going to a small hot set so that the cache is exercised
+   * the way a viewer panning around one area would. Every tenth request
+   * revalidates a tile it already fetched with If-None-Match.
+   *
+   * @param port the port the server is listening on
+   * @param requestCount the total number of requests to make
+   * @param clients the number of concurrent clients
+   */
+  public void runLoad(final int port, int requestCount, int clients)
+    throws FormatException, IOException
+  {
+    // enumerate the tiles of plane 0 of every series and level
+    final List<String> paths = new ArrayList<String>();
+    IFormatReader reader = readers.borrow(id);
+    try {
+      for (int s=0; s<reader.getSeriesCount(); s++) {
+        reader.setSeries(s);
+        for (int r=0; r<reader.getResolutionCount(); r++) {
+          reader.setResolution(r);
+          int cols = (reader.getSizeX() + tileSize - 1) / tileSize;
+          int rows = (reader.getSizeY() + tileSize - 1) / tileSize;
+          for (int row=0; row<rows; row++) {
+            for (int col=0; col<cols; col++) {
+              paths.add("/" + s + "/" + r + "/0/0/0/" + col + "/" + row);
+            }
+          }
+        }
+      }
+    }
+    finally {
+      readers.release(reader);
+    }
+
+    final int perClient = (requestCount + clients - 1) / clients;
+    final long[] latencies = new long[perClient * clients];
+    final AtomicLong failures = new AtomicLong();
+    ExecutorService pool = Executors.newFixedThreadPool(clients);
+    for (int client=0; client<clients; client++) {
+      final int offset = client * perClient;
+      final Random random = new Random(client);
+      pool.execute(() -> {
+        int hot = Math.max(1, paths.size() / 10);
+        String etag = null;
+        String etagPath = null;
+        for (int i=0; i<perClient; i++) {
+          String path = random.nextInt(10) < 8 ?
+            paths.get(random.nextInt(hot)) :
+            paths.get(random.nextInt(paths.size()));
+          boolean revalidate = etag != null && i % 10 == 9;
+          if (revalidate) {
+            path = etagPath;
+          }
+          long start = System.nanoTime();
+          try {
+            HttpURLConnection connection = (HttpURLConnection)
+              new URL("http://localhost:" + port + path).openConnection();
+            if (revalidate) {
+              connection.setRequestProperty("If-None-Match", etag);
+            }
+            int status = connection.getResponseCode();
+            int expected = revalidate ? 304 : 200;
+            if (status != expected) {
+              failures.incrementAndGet();
+            }
+            if (status == 200) {
+              try (InputStream in = connection.getInputStream()) {
+                byte[] buf = new byte[8192];
+                while (in.read(buf) >= 0);
+              }
+              etag = connection.getHeaderField("ETag");
+              etagPath = path;
+            }
+          }
+          catch (IOException e) {
+            failures.incrementAndGet();
+          }
+          latencies[offset + i] = System.nanoTime() - start;
+        }
+      });
+    }
+    pool.shutdown();
+    try {
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while generating load");
+    }
+
+    Arrays.sort(latencies);
+    System.out.println(latencies.length + " requests from " + clients +
+      " clients over " + paths.size() + " tiles, " + failures + " failures");
+    System.out.println("p50: " + percentile(latencies, 50) / 1000 + " us, " +
+      "p99: " + percentile(latencies, 99) / 1000 + " us, " +
+      "max: " + latencies[latencies.length - 1] / 1000 + " us");
+    if (failures.get() > 0) {
+      throw new IOException(failures + " requests failed");
+    }
+  }
+
+  private static long percentile(long[] sorted, int percent) {
+    int index = (int) Math.ceil(sorted.length * percent / 100.0) - 1;
+    return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("Usage: java TileServer input-file [--port port] " +
+        "[--tile-size size] [--threads threads] [--cache-tiles tiles] " +
+        "[--load requests]");
+      System.exit(1);
+    }
+    String id = args[0];
+    int port = 8080;
+    int tileSize = DEFAULT_TILE_SIZE;
+    int threads = Runtime.getRuntime().availableProcessors();
+    int cacheTiles = DEFAULT_CACHE_TILES;
+    int load = 0;
+    for (int i=1; i<args.length; i++) {
+      if (args[i].equals("--port")) {
+        port = Integer.parseInt(args[++i]);
+      }
+      else if (args[i].equals("--tile-size")) {
+        tileSize = Integer.parseInt(args[++i]);
+      }
+      else if (args[i].equals("--threads")) {
+        threads = Integer.parseInt(args[++i]);
+      }
+      else if (args[i].equals("--cache-tiles")) {
+        cacheTiles = Integer.parseInt(args[++i]);
+      }
+      else if (args[i].equals("--load")) {
+        load = Integer.parseInt(args[++i]);
+      }
+    }
+
+    TileServer server = new TileServer(id, tileSize, threads, cacheTiles);
+    port = server.start(port);
+    if (load == 0) {
+      System.out.println("Serving " + id + " at http://localhost:" + port +
+        "/{series}/{level}/{z}/{c}/{t}/{col}/{row}");
+      return;
+    }
+    try {
+      server.runLoad(port, load, threads);
+      System.out.println(server);
+    }
+    finally {
+      server.stop();
+    }
+  }
+
+}
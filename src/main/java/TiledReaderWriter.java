@@ -31,15 +31,30 @@
  */
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import loci.common.services.DependencyException;
 import loci.common.services.ServiceException;
 import loci.common.services.ServiceFactory;
 import loci.formats.FormatException;
+import loci.formats.IFormatReader;
+import loci.formats.IFormatWriter;
 import loci.formats.ImageReader;
 import loci.formats.FormatTools;
+import loci.formats.codec.CodecOptions;
 import loci.formats.meta.IMetadata;
-import loci.formats.out.OMETiffWriter;
+import loci.formats.out.TiffWriter;
 import loci.formats.services.OMEXMLService;
+import loci.formats.tiff.TiffCompression;
 
 /**
  * Example class for reading and writing a file in a tiled OME-Tiff format.
@@ -49,10 +64,10 @@ import loci.formats.services.OMEXMLService;
 public class TiledReaderWriter {
 
   /** The file format reader. */
-  private ImageReader reader;
+  private IFormatReader reader;
 
-  /** The file format writer. */
-  private OMETiffWriter writer;
+  /** The file format writer, chosen from the output file suffix. */
+  private InstrumentedWriter writer;
 
   /** The file to be read. */
   private String inputFile;
@@ -66,6 +81,30 @@ public class TiledReaderWriter {
   /** The tile height to be used. */
   private int tileSizeY;
 
+  /** The compression type used by the writer, or null for the default. */
+  private String compression;
+
+  /** The number of threads used to decode tiles. */
+  private int threads = 1;
+
+  /** Timings of the reader and writer calls. */
+  private final ConversionMetrics metrics = new ConversionMetrics();
+
+  /** The file to which a JSON summary of the timings is written, or null. */
+  private String metricsFile;
+
+  /** Additional readers used by the worker threads, one per thread. */
+  private BlockingQueue<IFormatReader> workerReaders;
+
+  /** The cache shared by all readers, or null to decode every tile. */
+  private TileCache tileCache;
+
+  /** Tile buffers reused across tiles rather than allocating one per tile. */
+  private final TileBufferPool buffers = new TileBufferPool();
+
+  /** Allocations made by the calling thread while converting tiles. */
+  private AllocationCounter allocations;
+
   /**
    * Construct a new TiledReaderWriter to read the specified input file 
    * and write the given output file using the tile sizes provided.
@@ -82,6 +121,67 @@ public class TiledReaderWriter {
     this.tileSizeY = tileSizeY;
   }
 
+  /**
+   * Set the compression type used when writing tiles, e.g. "LZW" or "JPEG".
+   *
+   * @param compression one of the writer's compression types
+   */
+  public void setCompression(String compression) {
+    this.compression = compression;
+  }
+
+  /**
+   * Write a JSON summary of the time spent initializing, decoding, encoding
+   * and closing once the tiles have been written.
+   *
+   * @param metricsFile the JSON file to write
+   */
+  public void setMetricsFile(String metricsFile) {
+    this.metricsFile = metricsFile;
+  }
+
+  /**
+   * Set the number of threads used to decode and compress tiles. With more
+   * than one thread, each worker opens its own reader on the input file,
+   * decodes tiles ahead of the writer and compresses them with the same TIFF
+   * codec the writer would use; the calling thread remains the only one to
+   * commit tiles, in the same order as a sequential run, so the output file
+   * is identical. Compression types the workers cannot apply, and planar
+   * multichannel images, which the writer splits into one tile per channel,
+   * are still compressed by the writer.
+   *
+   * @param threads the number of decoding threads, at least 1
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Thread count must be positive");
+    }
+    this.threads = threads;
+  }
+
+  /**
+   * Look up tiles in the given cache before decoding them, and keep decoded
+   * tiles in it. The cache is shared by the main reader and the worker
+   * readers, and may be shared with other readers of the same file.
+   *
+   * @param tileCache the cache to use, or null to decode every tile
+   */
+  public void setTileCache(TileCache tileCache) {
+    this.tileCache = tileCache;
+  }
+
+  /**
+   * @param reader a newly constructed reader
+   * @return the reader, wrapped to record its timings and to use the tile
+   *   cache if there is one
+   */
+  private IFormatReader wrap(IFormatReader reader) {
+    if (tileCache != null) {
+      reader = new CachingReader(reader, tileCache);
+    }
+    return new InstrumentedReader(reader, metrics);
+  }
+
   /**
    * Set up the file reader and writer, ensuring that the input file is
    * associated with the reader and the output file is associated with the
@@ -101,18 +201,22 @@ public class TiledReaderWriter {
     IMetadata omexml = service.createOMEXMLMetadata();
 
     // set up the reader and associate it with the input file
-    reader = new ImageReader();
+    reader = wrap(new ImageReader());
     reader.setMetadataStore(omexml);
     reader.setId(inputFile);
 
     // set up the writer and associate it with the output file
-    writer = new OMETiffWriter();
+    writer = new InstrumentedWriter(metrics);
     writer.setMetadataRetrieve(omexml);
     writer.setInterleaved(reader.isInterleaved());
+    IFormatWriter tiffWriter = writer.getWriter(outputFile);
+    if (compression != null) {
+      tiffWriter.setCompression(compression);
+    }
 
     // set the tile size height and width for writing
-    this.tileSizeX = writer.setTileSizeX(tileSizeX);
-    this.tileSizeY = writer.setTileSizeY(tileSizeY);
+    this.tileSizeX = tiffWriter.setTileSizeX(tileSizeX);
+    this.tileSizeY = tiffWriter.setTileSizeY(tileSizeY);
 
     writer.setId(outputFile);
   }
@@ -122,9 +226,11 @@ public class TiledReaderWriter {
    * @throws FormatException thrown by FormatWriter if attempting to set invalid series
    */
   public void readWriteTiles() throws FormatException, IOException {
-    int bpp = FormatTools.getBytesPerPixel(reader.getPixelType());
-    int tilePlaneSize = tileSizeX * tileSizeY * reader.getRGBChannelCount() * bpp;
-    byte[] buf = new byte[tilePlaneSize];
+    allocations = new AllocationCounter();
+    if (threads > 1) {
+      readWriteTilesParallel();
+      return;
+    }
 
     for (int series=0; series<reader.getSeriesCount(); series++) {
       reader.setSeries(series);
@@ -150,14 +256,265 @@ public class TiledReaderWriter {
             int tileX = x * tileSizeX;
             int tileY = y * tileSizeY;
 
+            // The last tile row and column are cut short by the image edge
+            int effTileSizeX = (tileX + tileSizeX) < width ? tileSizeX : width - tileX;
+            int effTileSizeY = (tileY + tileSizeY) < height ? tileSizeY : height - tileY;
+
             // Read tiles from the input file and write them to the output OME-Tiff
-            buf = reader.openBytes(image, tileX, tileY, tileSizeX, tileSizeY);
-            writer.saveBytes(image, buf, tileX, tileY, tileSizeX, tileSizeY);
+            byte[] buf = buffers.get(
+              FormatTools.getPlaneSize(reader, effTileSizeX, effTileSizeY));
+            reader.openBytes(image, buf, tileX, tileY, effTileSizeX, effTileSizeY);
+            writer.saveBytes(image, buf, tileX, tileY, effTileSizeX, effTileSizeY);
           }
         }
         /* tiling-example-end */
+        metrics.countPlane();
+      }
+    }
+  }
+
+  /**
+   * Read and compress tiles on a pool of worker threads and write them to
+   * the output OME-Tiff from the calling thread. A bounded window of tiles is
+   * prepared ahead of the writer, which commits them in row-major order.
+   * @throws IOException thrown if unable to read or write a tile
+   * @throws FormatException thrown if a worker reader cannot be initialized
+   *   or a tile cannot be decoded or encoded
+   */
+  private void readWriteTilesParallel() throws FormatException, IOException {
+    workerReaders = new ArrayBlockingQueue<IFormatReader>(threads);
+    for (int i=0; i<threads; i++) {
+      IFormatReader workerReader = wrap(new ImageReader());
+      workerReader.setId(inputFile);
+      workerReaders.add(workerReader);
+    }
+
+    TiffCompression tiffCompression = getTiffCompression(writer.getCompression());
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    int window = 2 * threads;
+    try {
+      for (int series=0; series<reader.getSeriesCount(); series++) {
+        reader.setSeries(series);
+        writer.setSeries(series);
+
+        // compress on the workers when every tile is a single TIFF tile
+        final CodecOptions options = tiffCompression == null ||
+          !writer.canSaveCompressedBytes() ||
+          (reader.getRGBChannelCount() > 1 && !writer.isInterleaved()) ?
+          null : getCodecOptions();
+
+        int width = reader.getSizeX();
+        int height = reader.getSizeY();
+        int nXTiles = width / tileSizeX;
+        int nYTiles = height / tileSizeY;
+        if (nXTiles * tileSizeX != width) nXTiles++;
+        if (nYTiles * tileSizeY != height) nYTiles++;
+        int nTiles = nXTiles * nYTiles;
+
+        for (int image=0; image<reader.getImageCount(); image++) {
+          Deque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+          Deque<byte[]> inFlight = new ArrayDeque<byte[]>();
+          int submitted = 0;
+          for (int tile=0; tile<nTiles; tile++) {
+            while (submitted < nTiles && pending.size() < window) {
+              final int s = series;
+              final int no = image;
+              final int tileX = (submitted % nXTiles) * tileSizeX;
+              final int tileY = (submitted / nXTiles) * tileSizeY;
+              final int w = Math.min(tileSizeX, width - tileX);
+              final int h = Math.min(tileSizeY, height - tileY);
+              if (options == null) {
+                final byte[] buf =
+                  buffers.acquire(FormatTools.getPlaneSize(reader, w, h));
+                pending.add(executor.submit(
+                  () -> decodeTile(s, no, buf, tileX, tileY, w, h)));
+                inFlight.add(buf);
+              }
+              else {
+                // compressed tiles are always padded to the full tile size
+                final byte[] buf = buffers.acquire(
+                  FormatTools.getPlaneSize(reader, tileSizeX, tileSizeY));
+                pending.add(executor.submit(() -> compressTile(
+                  tiffCompression, options, s, no, buf, tileX, tileY, w, h)));
+                inFlight.add(buf);
+              }
+              submitted++;
+            }
+
+            int tileX = (tile % nXTiles) * tileSizeX;
+            int tileY = (tile / nXTiles) * tileSizeY;
+            int w = Math.min(tileSizeX, width - tileX);
+            int h = Math.min(tileSizeY, height - tileY);
+            byte[] data = waitFor(pending.poll());
+            if (options == null) {
+              writer.saveBytes(image, data, tileX, tileY, w, h);
+            }
+            else {
+              writer.saveCompressedBytes(image, data, tileX, tileY, w, h);
+            }
+            buffers.release(inFlight.poll());
+          }
+          metrics.countPlane();
+        }
       }
     }
+    finally {
+      // tiles already being decoded still hold worker readers, which must be
+      // back in the queue before cleanup() closes them
+      executor.shutdownNow();
+      awaitTermination(executor);
+    }
+  }
+
+  /**
+   * Decode a single tile using one of the worker readers.
+   *
+   * @param series the series containing the tile
+   * @param image the index of the plane containing the tile
+   * @param buf the buffer to decode into
+   * @param tileX the x coordinate of the tile
+   * @param tileY the y coordinate of the tile
+   * @param w the width of the tile, smaller than the tile size at the edge
+   * @param h the height of the tile, smaller than the tile size at the edge
+   * @return the buffer containing the decoded tile
+   */
+  private byte[] decodeTile(int series, int image, byte[] buf, int tileX,
+    int tileY, int w, int h)
+    throws FormatException, IOException, InterruptedException
+  {
+    IFormatReader workerReader = workerReaders.take();
+    try {
+      workerReader.setSeries(series);
+      workerReader.openBytes(image, buf, tileX, tileY, w, h);
+      return buf;
+    }
+    finally {
+      workerReaders.add(workerReader);
+    }
+  }
+
+  /**
+   * Decode a single tile using one of the worker readers, pad it to the full
+   * tile size as the TIFF writer does for tiles at the image edge, and
+   * compress it.
+   *
+   * @param compression the compression used by the writer
+   * @param options the codec options for a full tile of the current series
+   * @param series the series containing the tile
+   * @param image the index of the plane containing the tile
+   * @param buf the buffer to decode into, large enough for a full tile
+   * @param tileX the x coordinate of the tile
+   * @param tileY the y coordinate of the tile
+   * @param w the width of the tile, smaller than the tile size at the edge
+   * @param h the height of the tile, smaller than the tile size at the edge
+   * @return the compressed tile
+   */
+  private byte[] compressTile(TiffCompression compression,
+    CodecOptions options, int series, int image, byte[] buf, int tileX,
+    int tileY, int w, int h)
+    throws FormatException, IOException, InterruptedException
+  {
+    decodeTile(series, image, buf, tileX, tileY, w, h);
+    if (w < tileSizeX || h < tileSizeY) {
+      // move each row to its padded position, starting from the last row so
+      // that no row is overwritten before it has been moved
+      int tileRowBytes = buf.length / tileSizeY;
+      int rowBytes = tileRowBytes / tileSizeX * w;
+      for (int row=h-1; row>=0; row--) {
+        System.arraycopy(buf, row * rowBytes, buf, row * tileRowBytes, rowBytes);
+        Arrays.fill(buf, row * tileRowBytes + rowBytes, (row + 1) * tileRowBytes, (byte) 0);
+      }
+      Arrays.fill(buf, h * tileRowBytes, buf.length, (byte) 0);
+    }
+    long start = metrics.start();
+    byte[] compressed = compression.compress(buf, new CodecOptions(options));
+    metrics.record(ConversionMetrics.Stage.COMPRESS, start, buf.length);
+    return compressed;
+  }
+
+  /**
+   * @param compression the writer's compression type
+   * @return the matching TIFF compression, or null if the workers should
+   *   leave compression to the writer
+   */
+  private static TiffCompression getTiffCompression(String compression) {
+    if (TiffWriter.COMPRESSION_LZW.equals(compression)) {
+      return TiffCompression.LZW;
+    }
+    if (TiffWriter.COMPRESSION_ZLIB.equals(compression)) {
+      return TiffCompression.DEFLATE;
+    }
+    if (TiffWriter.COMPRESSION_JPEG.equals(compression)) {
+      return TiffCompression.JPEG;
+    }
+    return null;
+  }
+
+  /**
+   * @return the codec options the TIFF writer uses for a full tile of the
+   *   current series
+   */
+  private CodecOptions getCodecOptions() {
+    CodecOptions options = new CodecOptions();
+    options.width = tileSizeX;
+    options.height = tileSizeY;
+    options.channels = writer.isInterleaved() ? reader.getRGBChannelCount() : 1;
+    options.bitsPerSample =
+      8 * FormatTools.getBytesPerPixel(reader.getPixelType());
+    options.littleEndian = reader.isLittleEndian();
+    options.interleaved = true;
+    options.signed = false;
+    return options;
+  }
+
+  /**
+   * Wait for a decoded tile, rethrowing any exception from the worker.
+   *
+   * @param future the pending tile
+   * @return the decoded tile
+   */
+  private static byte[] waitFor(Future<byte[]> future)
+    throws FormatException, IOException
+  {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while decoding tiles");
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof FormatException) {
+        throw (FormatException) cause;
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new FormatException(cause);
+    }
+  }
+
+  /**
+   * Wait for every task of a shut down executor to finish, so that no task
+   * is still using a reader when it is closed. Interrupts are deferred until
+   * the executor has terminated.
+   *
+   * @param executor the executor, already shut down
+   */
+  private static void awaitTermination(ExecutorService executor) {
+    boolean interrupted = false;
+    while (!executor.isTerminated()) {
+      try {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      }
+      catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
   }
 
   /** Close the file reader and writer. */
@@ -176,13 +533,33 @@ public class TiledReaderWriter {
       System.err.println("Failed to close writer.");
       e.printStackTrace();
     }
+    if (workerReaders != null) {
+      for (IFormatReader workerReader : workerReaders) {
+        try {
+          workerReader.close();
+        }
+        catch (IOException e) {
+          System.err.println("Failed to close worker reader.");
+          e.printStackTrace();
+        }
+      }
+      workerReaders = null;
+    }
   }
 
   /**
    * To read an image file and write out an OME-Tiff tiled image on the command line:
    *
    * $ java TiledReaderWriter input-file.oib output-file.ome.tiff 256 256
-   * @param args inputFile, outputFile, tileSizeX and tileSizeY
+   *
+   * To decode and LZW compress tiles on 8 threads:
+   *
+   * $ java TiledReaderWriter input-file.oib output-file.ome.tiff 256 256 --compression LZW --threads 8
+   *
+   * To keep up to 256 MB of decoded tiles off-heap for reuse:
+   *
+   * $ java TiledReaderWriter input-file.oib output-file.ome.tiff 256 256 --tile-cache 268435456
+   * @param args inputFile, outputFile, tileSizeX and tileSizeY, followed by optional flags
    * @throws IOException thrown if unable to setup input or output stream for reader or writer
    * @throws FormatException thrown when setting invalid values in reader or writer
    * @throws ServiceException thrown if unable to create OME-XML meta data
@@ -192,12 +569,28 @@ public class TiledReaderWriter {
     int tileSizeX = Integer.parseInt(args[2]);
     int tileSizeY = Integer.parseInt(args[3]);
     TiledReaderWriter tiledReadWriter = new TiledReaderWriter(args[0], args[1], tileSizeX, tileSizeY);
+    for (int i=4; i<args.length; i++) {
+      if (args[i].equals("--compression")) {
+        tiledReadWriter.setCompression(args[++i]);
+      }
+      else if (args[i].equals("--threads")) {
+        tiledReadWriter.setThreads(Integer.parseInt(args[++i]));
+      }
+      else if (args[i].equals("--metrics")) {
+        tiledReadWriter.setMetricsFile(args[++i]);
+      }
+      else if (args[i].equals("--tile-cache")) {
+        tiledReadWriter.setTileCache(new TileCache(Long.parseLong(args[++i])));
+      }
+    }
     // initialize the files
     tiledReadWriter.initialize();
 
     try {
       // read and write the image using tiles
       tiledReadWriter.readWriteTiles();
+      System.out.println(
+        tiledReadWriter.buffers + "; " + tiledReadWriter.allocations);
     }
     catch(Exception e) {
       System.err.println("Failed to read and write tiles.");
@@ -207,6 +600,10 @@ public class TiledReaderWriter {
     finally {
       // close the files
       tiledReadWriter.cleanup();
+      tiledReadWriter.metrics.report(tiledReadWriter.metricsFile);
+      if (tiledReadWriter.tileCache != null) {
+        System.out.println("Tile cache: " + tiledReadWriter.tileCache);
+      }
     }
   }
 
@@ -0,0 +1,172 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Cache-blocked transpose kernels for reslicing, specialised by pixel
+ * width.  Each kernel copies a matrix of 'rows' x 'cols' pixels so that
+ * pixel (r, c) of the source lands at column r of row c in the destination.
+ * The destination row stride may be larger than 'rows', so a transposed
+ * plane can be written straight into a wider block.
+ *
+ * Pixels of 2, 4 and 8 bytes are moved as a single short, int or long
+ * through ByteBuffer's absolute accessors, which the JIT compiles to one
+ * unaligned load and store on Java 9 and later.  Both buffers use the
+ * native byte order, so byte order is preserved without swapping.
+ */
+public final class TransposeKernels {
+
+  /** Edge length, in pixels, of the tiles the transpose is done in. */
+  private static final int BLOCK = 64;
+
+  private TransposeKernels() {
+  }
+
+  /**
+   * Transposes a matrix of pixels.
+   *
+   * @param src source pixels, row-major
+   * @param srcOffset byte offset of the first source pixel
+   * @param rows number of rows in the source
+   * @param cols number of columns in the source
+   * @param dst destination buffer
+   * @param dstOffset byte offset of the first destination pixel
+   * @param dstStride distance between destination rows, in pixels
+   * @param bpp bytes per pixel
+   */
+  public static void transpose(byte[] src, int srcOffset, int rows, int cols,
+    byte[] dst, int dstOffset, int dstStride, int bpp)
+  {
+    ByteBuffer in = ByteBuffer.wrap(src).order(ByteOrder.nativeOrder());
+    ByteBuffer out = ByteBuffer.wrap(dst).order(ByteOrder.nativeOrder());
+    for (int r0=0; r0<rows; r0+=BLOCK) {
+      int r1 = Math.min(r0 + BLOCK, rows);
+      for (int c0=0; c0<cols; c0+=BLOCK) {
+        int c1 = Math.min(c0 + BLOCK, cols);
+        switch (bpp) {
+          case 1:
+            transpose8(src, srcOffset, cols, dst, dstOffset, dstStride,
+              r0, r1, c0, c1);
+            break;
+          case 2:
+            transpose16(in, srcOffset, cols, out, dstOffset, dstStride,
+              r0, r1, c0, c1);
+            break;
+          case 4:
+            transpose32(in, srcOffset, cols, out, dstOffset, dstStride,
+              r0, r1, c0, c1);
+            break;
+          case 8:
+            transpose64(in, srcOffset, cols, out, dstOffset, dstStride,
+              r0, r1, c0, c1);
+            break;
+          default:
+            transposeN(src, srcOffset, cols, dst, dstOffset, dstStride,
+              r0, r1, c0, c1, bpp);
+        }
+      }
+    }
+  }
+
+  private static void transpose8(byte[] src, int srcOffset, int cols,
+    byte[] dst, int dstOffset, int dstStride, int r0, int r1, int c0, int c1)
+  {
+    for (int c=c0; c<c1; c++) {
+      int out = dstOffset + c * dstStride + r0;
+      int in = srcOffset + r0 * cols + c;
+      for (int r=r0; r<r1; r++, in+=cols) {
+        dst[out++] = src[in];
+      }
+    }
+  }
+
+  private static void transpose16(ByteBuffer src, int srcOffset, int cols,
+    ByteBuffer dst, int dstOffset, int dstStride, int r0, int r1, int c0,
+    int c1)
+  {
+    int srcStride = cols * 2;
+    for (int c=c0; c<c1; c++) {
+      int out = dstOffset + (c * dstStride + r0) * 2;
+      int in = srcOffset + r0 * srcStride + c * 2;
+      for (int r=r0; r<r1; r++, in+=srcStride, out+=2) {
+        dst.putShort(out, src.getShort(in));
+      }
+    }
+  }
+
+  private static void transpose32(ByteBuffer src, int srcOffset, int cols,
+    ByteBuffer dst, int dstOffset, int dstStride, int r0, int r1, int c0,
+    int c1)
+  {
+    int srcStride = cols * 4;
+    for (int c=c0; c<c1; c++) {
+      int out = dstOffset + (c * dstStride + r0) * 4;
+      int in = srcOffset + r0 * srcStride + c * 4;
+      for (int r=r0; r<r1; r++, in+=srcStride, out+=4) {
+        dst.putInt(out, src.getInt(in));
+      }
+    }
+  }
+
+  private static void transpose64(ByteBuffer src, int srcOffset, int cols,
+    ByteBuffer dst, int dstOffset, int dstStride, int r0, int r1, int c0,
+    int c1)
+  {
+    int srcStride = cols * 8;
+    for (int c=c0; c<c1; c++) {
+      int out = dstOffset + (c * dstStride + r0) * 8;
+      int in = srcOffset + r0 * srcStride + c * 8;
+      for (int r=r0; r<r1; r++, in+=srcStride, out+=8) {
+        dst.putLong(out, src.getLong(in));
+      }
+    }
+  }
+
+  private static void transposeN(byte[] src, int srcOffset, int cols,
+    byte[] dst, int dstOffset, int dstStride, int r0, int r1, int c0, int c1,
+    int bpp)
+  {
+    int srcStride = cols * bpp;
+    for (int c=c0; c<c1; c++) {
+      int out = dstOffset + (c * dstStride + r0) * bpp;
+      int in = srcOffset + r0 * srcStride + c * bpp;
+      for (int r=r0; r<r1; r++, in+=srcStride) {
+        System.arraycopy(src, in, dst, out, bpp);
+        out += bpp;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,266 @@
+/*
+ * #%L
+ * Bio-Formats examples
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.io.IOException;
+
+import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.ImageReader;
+
+/**
+ * Reads a region of an image at a requested output size, using the
+ * coarsest resolution level that still has at least as many pixels as the
+ * output. A zoomed out view of a large pyramid therefore decodes a few
+ * tiles of a small level instead of the full resolution region.
+ *
+ * The reader must have been initialized with flattened resolutions turned
+ * off, so that the levels of each series are available through
+ * setResolution.
+ *
+ * $ java ViewportReader file series x y width height output-width output-height
+ */
+public class ViewportReader {
+
+  /** A region of one resolution level, in that level's coordinates. */
+  public static class Viewport {
+    public final int series;
+    public final int resolution;
+    public final int x;
+    public final int y;
+    public final int width;
+    public final int height;
+
+    Viewport(int series, int resolution, int x, int y, int width, int height) {
+      this.series = series;
+      this.resolution = resolution;
+      this.x = x;
+      this.y = y;
+      this.width = width;
+      this.height = height;
+    }
+
+    @Override
+    public String toString() {
+      return "series " + series + ", resolution " + resolution + ": " +
+        width + " x " + height + " at (" + x + ", " + y + ")";
+    }
+  }
+
+  private final IFormatReader reader;
+
+  /**
+   * @param reader an initialized reader with flattened resolutions off
+   */
+  public ViewportReader(IFormatReader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * Find the level to read a full resolution region from, and the
+   * matching region of that level.
+   *
+   * @param series the series to read
+   * @param x the left edge of the region, at full resolution
+   * @param y the top edge of the region, at full resolution
+   * @param width the width of the region, at full resolution
+   * @param height the height of the region, at full resolution
+   * @param outputWidth the width of the image to produce
+   * @param outputHeight the height of the image to produce
+   * @return the region to read
+   */
+  public Viewport locate(int series, int x, int y, int width, int height,
+    int outputWidth, int outputHeight)
+  {
+    reader.setSeries(series);
+    reader.setResolution(0);
+    int fullWidth = reader.getSizeX();
+    int fullHeight = reader.getSizeY();
+    if (x < 0 || y < 0 || width <= 0 || height <= 0 ||
+      x + width > fullWidth || y + height > fullHeight)
+    {
+      throw new IllegalArgumentException("Region " + width + " x " + height +
+        " at (" + x + ", " + y + ") is outside the " + fullWidth + " x " +
+        fullHeight + " image");
+    }
+
+    // levels are ordered from largest to smallest
+    int resolution = 0;
+    for (int r=1; r<reader.getResolutionCount(); r++) {
+      reader.setResolution(r);
+      double scaleX = (double) fullWidth / reader.getSizeX();
+      double scaleY = (double) fullHeight / reader.getSizeY();
+      if (width / scaleX < outputWidth || height / scaleY < outputHeight) {
+        break;
+      }
+      resolution = r;
+    }
+
+    reader.setResolution(resolution);
+    int levelWidth = reader.getSizeX();
+    int levelHeight = reader.getSizeY();
+    int x0 = (int) ((long) x * levelWidth / fullWidth);
+    int y0 = (int) ((long) y * levelHeight / fullHeight);
+    int x1 = (int) (((long) (x + width) * levelWidth + fullWidth - 1) / fullWidth);
+    int y1 = (int) (((long) (y + height) * levelHeight + fullHeight - 1) / fullHeight);
+    x1 = Math.max(x0 + 1, Math.min(x1, levelWidth));
+    y1 = Math.max(y0 + 1, Math.min(y1, levelHeight));
+    reader.setResolution(0);
+    return new Viewport(series, resolution, x0, y0, x1 - x0, y1 - y0);
+  }
+
+  /**
+   * Read a full resolution region scaled to the given output size.
+   *
+   * @param series the series to read
+   * @param no the plane to read
+   * @param x the left edge of the region, at full resolution
+   * @param y the top edge of the region, at full resolution
+   * @param width the width of the region, at full resolution
+   * @param height the height of the region, at full resolution
+   * @param outputWidth the width of the image to produce
+   * @param outputHeight the height of the image to produce
+   * @return the pixels, laid out as openBytes would for the output size
+   * @throws FormatException if the region cannot be decoded
+   * @throws IOException if the file cannot be read
+   */
+  public byte[] openBytes(int series, int no, int x, int y, int width,
+    int height, int outputWidth, int outputHeight)
+    throws FormatException, IOException
+  {
+    Viewport viewport =
+      locate(series, x, y, width, height, outputWidth, outputHeight);
+    return openBytes(viewport, no, outputWidth, outputHeight);
+  }
+
+  /**
+   * Read a located region scaled to the given output size. Only the tiles
+   * of the chosen level covering the region are decoded.
+   *
+   * @param viewport the region returned by {@link #locate}
+   * @param no the plane to read
+   * @param outputWidth the width of the image to produce
+   * @param outputHeight the height of the image to produce
+   * @return the pixels, laid out as openBytes would for the output size
+   * @throws FormatException if the region cannot be decoded
+   * @throws IOException if the file cannot be read
+   */
+  public byte[] openBytes(Viewport viewport, int no, int outputWidth,
+    int outputHeight) throws FormatException, IOException
+  {
+    reader.setSeries(viewport.series);
+    reader.setResolution(viewport.resolution);
+    try {
+      byte[] region = reader.openBytes(no, viewport.x, viewport.y,
+        viewport.width, viewport.height);
+      if (viewport.width == outputWidth && viewport.height == outputHeight) {
+        return region;
+      }
+      int bpp = FormatTools.getBytesPerPixel(reader.getPixelType());
+      int channels = reader.getRGBChannelCount();
+      boolean interleaved = reader.isInterleaved();
+      return resample(region, viewport.width, viewport.height,
+        outputWidth, outputHeight, interleaved ? bpp * channels : bpp,
+        interleaved ? 1 : channels);
+    }
+    finally {
+      reader.setResolution(0);
+    }
+  }
+
+  /**
+   * Nearest neighbour resampling of an image made of 'blocks' separately
+   * stored channels of 'pixelBytes' bytes per pixel.
+   */
+  private static byte[] resample(byte[] src, int srcWidth, int srcHeight,
+    int dstWidth, int dstHeight, int pixelBytes, int blocks)
+  {
+    byte[] dst = new byte[dstWidth * dstHeight * pixelBytes * blocks];
+    int[] columns = new int[dstWidth];
+    for (int dx=0; dx<dstWidth; dx++) {
+      columns[dx] = (int) ((long) dx * srcWidth / dstWidth) * pixelBytes;
+    }
+    int srcBlock = srcWidth * srcHeight * pixelBytes;
+    int out = 0;
+    for (int b=0; b<blocks; b++) {
+      for (int dy=0; dy<dstHeight; dy++) {
+        int row = b * srcBlock +
+          (int) ((long) dy * srcHeight / dstHeight) * srcWidth * pixelBytes;
+        for (int dx=0; dx<dstWidth; dx++) {
+          System.arraycopy(src, row + columns[dx], dst, out, pixelBytes);
+          out += pixelBytes;
+        }
+      }
+    }
+    return dst;
+  }
+
+  public static void main(String[] args) throws FormatException, IOException {
+    if (args.length < 8) {
+      System.err.println("Usage: java ViewportReader file series x y " +
+        "width height output-width output-height");
+      System.exit(1);
+    }
+    int series = Integer.parseInt(args[1]);
+    int x = Integer.parseInt(args[2]);
+    int y = Integer.parseInt(args[3]);
+    int width = Integer.parseInt(args[4]);
+    int height = Integer.parseInt(args[5]);
+    int outputWidth = Integer.parseInt(args[6]);
+    int outputHeight = Integer.parseInt(args[7]);
+
+    IFormatReader reader = new ImageReader();
+    reader.setFlattenedResolutions(false);
+    reader.setId(args[0]);
+    try {
+      ViewportReader viewports = new ViewportReader(reader);
+      Viewport viewport = viewports.locate(series, x, y, width, height,
+        outputWidth, outputHeight);
+      System.out.println("Reading " + viewport);
+      byte[] pixels = viewports.openBytes(viewport, 0, outputWidth, outputHeight);
+
+      // the full resolution region may well exceed 2 GB
+      reader.setSeries(series);
+      long pixelBytes = (long) reader.getRGBChannelCount() *
+        FormatTools.getBytesPerPixel(reader.getPixelType());
+      long fullBytes = (long) width * height * pixelBytes;
+      long viewportBytes = (long) viewport.width * viewport.height * pixelBytes;
+      System.out.println("Read " + viewportBytes + " bytes instead of " +
+        fullBytes + "; output is " + pixels.length + " bytes");
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+}